@@ -3,6 +3,7 @@ package com.facedistanceblur;
 import android.accessibilityservice.AccessibilityService;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.PixelFormat;
 import android.view.accessibility.AccessibilityEvent;
 import android.hardware.camera2.CameraAccessException;
@@ -16,9 +17,11 @@ import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.WindowManager;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
@@ -28,31 +31,57 @@ import androidx.core.content.ContextCompat;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class BlurAccessibilityService extends AccessibilityService {
     private static final String TAG = "BlurAccessibilityService";
-    private static final float SAFE_DISTANCE_THRESHOLD = 0.6f; // Adjust based on testing
+    private static final int MAX_FRAMES_IN_FLIGHT = 2;
+    private static final int LATENCY_SAMPLE_COUNT = 256;
+    private static final int ENROLLMENT_SAMPLES = 5;
+    // Detection misses a face for a frame or two now and then; only a longer absence
+    // means someone else may have sat down
+    private static final long FACE_LOST_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
     
     private WindowManager windowManager;
     private View blurView;
     private ProcessCameraProvider cameraProvider;
     private ImageAnalysis imageAnalysis;
-    private FaceDetector faceDetector;
+    private ImageAnalysis.Analyzer frameAnalyzer;
+    private FaceDetectionBackend detectionBackend;
+    private FrameBufferPool framePool;
+    private PolicyStore policyStore;
+    private PolicyBundleWatcher policyWatcher;
     private ExecutorService cameraExecutor;
     private HandlerThread backgroundThread;
     private Handler backgroundHandler;
     private boolean isBlurActive = false;
     private boolean isServiceRunning = false;
+    private final LatencyStats overlayLatency = new LatencyStats(LATENCY_SAMPLE_COUNT);
+    private final BreakScheduler breakScheduler = new BreakScheduler();
+    private SharedPreferences userPrefs;
+    private SharedPreferences.OnSharedPreferenceChangeListener breakPrefsListener;
+    private int overlayMessageRes;
+    private ProfileStore profileStore;
+    private SharedPreferences.OnSharedPreferenceChangeListener profilePrefsListener;
+    private ProfileIndex profileIndex = ProfileIndex.EMPTY;
+    private FaceProfile activeProfile;
+    private boolean isIdentifying = false;
+    private boolean hasIdentifiedFace = false;
+    private boolean adoptNextTrackingId = false;
+    private int identifiedTrackingId;
+    private boolean hasSeenFace = false;
+    private long lastFaceSeenNanos;
+    private String enrollmentName;
+    private float enrollmentThreshold;
+    private final float[] enrollmentSum = new float[FaceSignature.LENGTH];
+    private int enrollmentCount;
 
     @Override
     public void onCreate() {
@@ -61,19 +90,20 @@ public class BlurAccessibilityService extends AccessibilityService {
     }
 
     private void initializeComponents() {
+        // Load any policy bundle already on disk before building the detector
+        policyStore = new PolicyStore(PolicyBundle.DEFAULT);
+        policyWatcher = new PolicyBundleWatcher(getFilesDir(), policyStore, this::onPolicyChanged);
+        policyWatcher.loadInitial();
+        
         // Initialize ML Kit Face Detector
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
-                .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
-                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
-                .setMinFaceSize(0.15f)
-                .build();
+        detectionBackend = createDetectionBackend(policyStore.get());
         
-        faceDetector = FaceDetection.getClient(options);
+        // One pooled buffer per frame allowed through the detector at once
+        framePool = new FrameBufferPool(MAX_FRAMES_IN_FLIGHT);
         
         // Initialize camera executor
         cameraExecutor = Executors.newSingleThreadExecutor();
+        frameAnalyzer = new FaceDistanceAnalyzer();
         
         // Initialize background thread
         backgroundThread = new HandlerThread("CameraBackground");
@@ -82,6 +112,95 @@ public class BlurAccessibilityService extends AccessibilityService {
         
         // Initialize window manager
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        
+        // Break rules follow the settings screen while the service runs
+        userPrefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+        breakScheduler.setRules(loadBreakRules(userPrefs));
+        breakPrefsListener = (prefs, key) -> {
+            if ("breaksEnabled".equals(key) || "breakWorkMinutes".equals(key)
+                    || "breakSeconds".equals(key)) {
+                breakScheduler.setRules(loadBreakRules(prefs));
+            }
+        };
+        userPrefs.registerOnSharedPreferenceChangeListener(breakPrefsListener);
+        
+        // Per-person thresholds for shared devices
+        profileStore = new ProfileStore(this);
+        loadProfiles();
+        profilePrefsListener = (prefs, key) -> loadProfiles();
+        profileStore.getPreferences().registerOnSharedPreferenceChangeListener(profilePrefsListener);
+        
+        // Watch for new bundles only once everything a reload touches exists, then
+        // pick up any bundle that landed while the service was starting
+        policyWatcher.startWatching();
+        policyWatcher.reload();
+    }
+
+    private void loadProfiles() {
+        profileIndex = new ProfileIndex(profileStore.load());
+        enrollmentName = profileStore.getPendingEnrollmentName();
+        enrollmentThreshold = profileStore.getPendingEnrollmentThreshold();
+        enrollmentCount = 0;
+        Arrays.fill(enrollmentSum, 0f);
+        if (profileIndex.size() == 0) {
+            activeProfile = null;
+        }
+        // Match the current face again against the new set of profiles
+        hasIdentifiedFace = false;
+    }
+
+    private static BreakScheduler.Rules loadBreakRules(SharedPreferences prefs) {
+        if (!prefs.getBoolean("breaksEnabled", false)) {
+            return BreakScheduler.Rules.DISABLED;
+        }
+        return BreakScheduler.Rules.of(
+            prefs.getInt("breakWorkMinutes", 20),
+            prefs.getInt("breakSeconds", 20)
+        );
+    }
+
+    private void onPolicyChanged(PolicyBundle previous, PolicyBundle current) {
+        // Swap on the analyzer thread so no frame starts on a closed detector
+        runOnAnalyzerThread(() -> detectionBackend.applyPolicy(current));
+    }
+
+    /** Overridden by tests to run the service against a scripted detector. */
+    @VisibleForTesting
+    FaceDetectionBackend createDetectionBackend(PolicyBundle policy) {
+        return new MlKitFaceBackend(policy);
+    }
+
+    /** The analyzer CameraX feeds; tests hand it synthetic frames instead. */
+    @VisibleForTesting
+    ImageAnalysis.Analyzer getFrameAnalyzer() {
+        return frameAnalyzer;
+    }
+
+    /** Thread that owns the detector; policy and landmark changes are queued here. */
+    @VisibleForTesting
+    ExecutorService getAnalyzerExecutor() {
+        return cameraExecutor;
+    }
+
+    @VisibleForTesting
+    PolicyBundleWatcher getPolicyWatcher() {
+        return policyWatcher;
+    }
+
+    @VisibleForTesting
+    FrameBufferPool getFramePool() {
+        return framePool;
+    }
+
+    /** Time from frame capture to the overlay being added or removed. */
+    @VisibleForTesting
+    LatencyStats getOverlayLatency() {
+        return overlayLatency;
+    }
+
+    @VisibleForTesting
+    boolean isBlurActive() {
+        return isBlurActive;
     }
 
     @Override
@@ -132,7 +251,7 @@ public class BlurAccessibilityService extends AccessibilityService {
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build();
 
-        imageAnalysis.setAnalyzer(cameraExecutor, new FaceDistanceAnalyzer());
+        imageAnalysis.setAnalyzer(cameraExecutor, frameAnalyzer);
 
         try {
             cameraProvider.unbindAll();
@@ -148,65 +267,205 @@ public class BlurAccessibilityService extends AccessibilityService {
     }
 
     private class FaceDistanceAnalyzer implements ImageAnalysis.Analyzer {
+        private final Nv21Converter nv21Converter = new Nv21Converter();
+
         @Override
         public void analyze(@NonNull ImageProxy imageProxy) {
-            InputImage image = InputImage.fromMediaImage(
-                imageProxy.getImage(), 
-                imageProxy.getImageInfo().getRotationDegrees()
+            int width = imageProxy.getWidth();
+            int height = imageProxy.getHeight();
+            FrameBufferPool.Lease lease = framePool.acquire(
+                width * height * 3 / 2,
+                width,
+                height,
+                imageProxy.getImageInfo().getRotationDegrees(),
+                System.nanoTime()
             );
 
-            faceDetector.process(image)
-                    .addOnSuccessListener(faces -> {
-                        processFaces(faces, imageProxy.getWidth(), imageProxy.getHeight());
-                        imageProxy.close();
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Face detection failed: " + e.getMessage());
-                        imageProxy.close();
-                    });
+            if (lease == null) {
+                // Detector still busy with earlier frames, drop this one
+                imageProxy.close();
+                return;
+            }
+
+            // Copy the planes once and hand the proxy back to CameraX straight away
+            try {
+                nv21Converter.convert(width, height, imageProxy.getPlanes(), lease.getBuffer());
+            } catch (RuntimeException e) {
+                // A frame with an unexpected plane layout must not hold a pool slot forever
+                lease.release();
+                Log.e(TAG, "Dropping frame that could not be copied: " + e.getMessage());
+                return;
+            } finally {
+                imageProxy.close();
+            }
+
+            submitFrame(lease);
         }
     }
 
-    private void processFaces(List<Face> faces, int imageWidth, int imageHeight) {
-        if (faces.isEmpty()) {
-            // No face detected, remove blur
-            if (isBlurActive) {
-                removeBlurOverlay();
+    /**
+     * Runs detection on a pooled frame and applies the result. Takes over the caller's
+     * reference to {@code lease}. Frames can be injected here directly, bypassing CameraX.
+     */
+    @VisibleForTesting
+    void submitFrame(FrameBufferPool.Lease lease) {
+        detectionBackend.detect(lease, new FaceDetectionBackend.Callback() {
+            @Override
+            public void onFaces(List<DetectedFace> faces) {
+                processFaces(faces, lease.getWidth(), lease.getHeight(), lease.getTimestampNanos());
+                lease.release();
             }
-            return;
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Face detection failed: " + e.getMessage());
+                lease.release();
+            }
+        });
+    }
+
+    private void processFaces(List<DetectedFace> faces, int imageWidth, int imageHeight,
+                              long frameTimestampNanos) {
+        // Face presence drives the break timer at no extra camera cost
+        boolean isOnBreak = breakScheduler.onSample(!faces.isEmpty(), frameTimestampNanos);
+
+        boolean isTooClose = false;
+        if (!faces.isEmpty()) {
+            if (hasSeenFace && frameTimestampNanos - lastFaceSeenNanos >= FACE_LOST_NANOS) {
+                // Whoever came back may be someone else, identify them again
+                hasIdentifiedFace = false;
+                adoptNextTrackingId = false;
+                activeProfile = null;
+            }
+            hasSeenFace = true;
+            lastFaceSeenNanos = frameTimestampNanos;
+
+            // Get the largest face (closest to camera)
+            DetectedFace largestFace = faces.get(0);
+            for (DetectedFace face : faces) {
+                if (face.getArea() > largestFace.getArea()) {
+                    largestFace = face;
+                }
+            }
+
+            updateProfile(largestFace);
+            // Until the face is identified it may belong to someone other than the last match
+            float threshold = activeProfile != null && !isIdentifying
+                ? activeProfile.getSafeDistanceThreshold()
+                : policyStore.get().getSafeDistanceThreshold();
+
+            // Calculate face size ratio (larger = closer)
+            float faceSizeRatio = (float) largestFace.getArea() / (imageWidth * imageHeight);
+            isTooClose = faceSizeRatio > threshold;
         }
 
-        // Get the largest face (closest to camera)
-        Face largestFace = faces.get(0);
-        for (Face face : faces) {
-            if (face.getBoundingBox().width() * face.getBoundingBox().height() >
-                largestFace.getBoundingBox().width() * largestFace.getBoundingBox().height()) {
-                largestFace = face;
+        if (isOnBreak || isTooClose) {
+            // A due break takes priority over the distance warning
+            int messageRes = isOnBreak ? R.string.overlay_take_break : R.string.overlay_move_back;
+            if (!isBlurActive) {
+                showBlurOverlay(messageRes);
+                if (isBlurActive) recordOverlayLatency(frameTimestampNanos);
+            } else if (messageRes != overlayMessageRes) {
+                setOverlayMessage(messageRes);
             }
+        } else if (isBlurActive) {
+            removeBlurOverlay();
+            if (!isBlurActive) recordOverlayLatency(frameTimestampNanos);
         }
+    }
 
-        // Calculate face size ratio (larger = closer)
-        float faceSizeRatio = (float) (largestFace.getBoundingBox().width() * 
-                                      largestFace.getBoundingBox().height()) / 
-                                   (imageWidth * imageHeight);
+    /**
+     * Enrolls or identifies the closest face. Landmarks are only requested from the
+     * detector while a signature is needed: during enrollment, at the start of a
+     * session, and when the tracked face changes.
+     */
+    private void updateProfile(DetectedFace face) {
+        float[] landmarks = face.getLandmarks();
 
-        // Check if face is too close
-        if (faceSizeRatio > SAFE_DISTANCE_THRESHOLD) {
-            if (!isBlurActive) {
-                showBlurOverlay();
+        if (enrollmentName != null) {
+            setLandmarksRequested(true);
+            float[] signature = landmarks != null ? FaceSignature.fromLandmarks(landmarks) : null;
+            if (signature == null) return;
+
+            // Average a few frames so one noisy detection does not define the profile
+            for (int i = 0; i < FaceSignature.LENGTH; i++) {
+                enrollmentSum[i] += signature[i];
+            }
+            if (++enrollmentCount < ENROLLMENT_SAMPLES) return;
+            for (int i = 0; i < FaceSignature.LENGTH; i++) {
+                enrollmentSum[i] /= enrollmentCount;
+            }
+
+            // Saving reloads the profiles, which identifies the face again on the next frame
+            Log.d(TAG, "Enrolled profile " + enrollmentName);
+            FaceProfile profile = new FaceProfile(enrollmentName, enrollmentThreshold, enrollmentSum);
+            enrollmentName = null;
+            profileStore.completeEnrollment(profile);
+            return;
+        }
+
+        if (profileIndex.size() == 0) {
+            setLandmarksRequested(false);
+            return;
+        }
+
+        if (!isIdentifying) {
+            // Late result from the landmark detector, already handled
+            if (landmarks != null) return;
+
+            // Rebuilding the detector restarts tracking IDs, so take the first new one as is
+            if (adoptNextTrackingId && hasIdentifiedFace) {
+                identifiedTrackingId = face.getTrackingId();
+                adoptNextTrackingId = false;
+                return;
             }
-        } else {
-            if (isBlurActive) {
-                removeBlurOverlay();
+            // Without tracking IDs the same face is kept until it is lost
+            if (hasIdentifiedFace && (face.getTrackingId() == identifiedTrackingId
+                    || face.getTrackingId() == DetectedFace.NO_TRACKING_ID)) {
+                return;
             }
+
+            setLandmarksRequested(true);
+            return;
+        }
+
+        float[] signature = landmarks != null ? FaceSignature.fromLandmarks(landmarks) : null;
+        if (signature == null) return;
+
+        activeProfile = profileIndex.findNearest(signature, ProfileIndex.DEFAULT_MAX_DISTANCE);
+        hasIdentifiedFace = true;
+        adoptNextTrackingId = true;
+        setLandmarksRequested(false);
+        Log.d(TAG, activeProfile != null
+            ? "Identified profile " + activeProfile.getName()
+            : "No matching profile, using default threshold");
+    }
+
+    private void setLandmarksRequested(boolean requested) {
+        if (requested == isIdentifying) return;
+        isIdentifying = requested;
+        runOnAnalyzerThread(() -> detectionBackend.setLandmarksEnabled(requested));
+    }
+
+    private void runOnAnalyzerThread(Runnable task) {
+        try {
+            cameraExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Service is shutting down, closing the detector was queued before this
+            Log.w(TAG, "Dropping analyzer task after shutdown");
         }
     }
 
-    private void showBlurOverlay() {
+    private void recordOverlayLatency(long frameTimestampNanos) {
+        overlayLatency.record(System.nanoTime() - frameTimestampNanos);
+    }
+
+    private void showBlurOverlay(int messageRes) {
         if (blurView != null) return;
 
         try {
             blurView = LayoutInflater.from(this).inflate(R.layout.blur_overlay, null);
+            setOverlayMessage(messageRes);
             
             WindowManager.LayoutParams params = new WindowManager.LayoutParams(
                     WindowManager.LayoutParams.MATCH_PARENT,
@@ -228,6 +487,12 @@ public class BlurAccessibilityService extends AccessibilityService {
         }
     }
 
+    private void setOverlayMessage(int messageRes) {
+        TextView tvOverlayMessage = blurView.findViewById(R.id.tvOverlayMessage);
+        tvOverlayMessage.setText(messageRes);
+        overlayMessageRes = messageRes;
+    }
+
     private void removeBlurOverlay() {
         if (blurView != null && windowManager != null) {
             try {
@@ -244,6 +509,18 @@ public class BlurAccessibilityService extends AccessibilityService {
     private void stopFaceDetection() {
         isServiceRunning = false;
         
+        if (policyWatcher != null) {
+            policyWatcher.stopWatching();
+        }
+        
+        if (userPrefs != null) {
+            userPrefs.unregisterOnSharedPreferenceChangeListener(breakPrefsListener);
+        }
+        
+        if (profileStore != null) {
+            profileStore.getPreferences().unregisterOnSharedPreferenceChangeListener(profilePrefsListener);
+        }
+        
         if (imageAnalysis != null) {
             imageAnalysis.clearAnalyzer();
         }
@@ -252,8 +529,9 @@ public class BlurAccessibilityService extends AccessibilityService {
             cameraProvider.unbindAll();
         }
         
-        if (faceDetector != null) {
-            faceDetector.close();
+        if (detectionBackend != null) {
+            // Queued behind any policy or landmark change so none of them runs on a closed detector
+            runOnAnalyzerThread(detectionBackend::close);
         }
         
         if (cameraExecutor != null) {
@@ -265,6 +543,7 @@ public class BlurAccessibilityService extends AccessibilityService {
         }
         
         removeBlurOverlay();
+        Log.d(TAG, "Frame-to-overlay latency " + overlayLatency.summary());
     }
 
     @Override
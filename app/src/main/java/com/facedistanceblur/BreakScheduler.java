@@ -0,0 +1,137 @@
+package com.facedistanceblur;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks face-present screen time from the detection stream and decides when a
+ * 20-20-20 style break is due. All timing is derived from the monotonic timestamps of
+ * incoming samples, so nothing runs between frames and no timers are scheduled.
+ */
+public class BreakScheduler {
+    // Longer gaps between samples mean detection was paused, not that the user kept looking
+    private static final long MAX_SAMPLE_GAP_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    public static final class Rules {
+        public static final Rules DISABLED = new Rules(0, 0);
+
+        private final long workNanos;
+        private final long breakNanos;
+
+        private Rules(long workNanos, long breakNanos) {
+            this.workNanos = workNanos;
+            this.breakNanos = breakNanos;
+        }
+
+        /** A break of {@code breakSeconds} after every {@code workMinutes} of screen time. */
+        public static Rules of(int workMinutes, int breakSeconds) {
+            if (workMinutes <= 0 || breakSeconds <= 0) return DISABLED;
+            return new Rules(TimeUnit.MINUTES.toNanos(workMinutes), TimeUnit.SECONDS.toNanos(breakSeconds));
+        }
+
+        public boolean isEnabled() {
+            return workNanos > 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Rules)) return false;
+            Rules other = (Rules) o;
+            return workNanos == other.workNanos && breakNanos == other.breakNanos;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(workNanos) + Long.hashCode(breakNanos);
+        }
+    }
+
+    private Rules rules = Rules.DISABLED;
+    private long screenTimeNanos;
+    private long lastSampleNanos;
+    private boolean hasLastSample;
+    private boolean lastFacePresent;
+    private long absentSinceNanos;
+    private boolean isAbsent;
+    private long breakEndsAtNanos;
+    private boolean isOnBreak;
+
+    /**
+     * Replaces the rules and starts counting screen time from zero. Setting rules equal
+     * to the current ones keeps the count, so re-saving settings does not postpone a break.
+     */
+    public void setRules(Rules rules) {
+        if (rules.equals(this.rules)) return;
+        this.rules = rules;
+        reset();
+    }
+
+    public void reset() {
+        screenTimeNanos = 0;
+        hasLastSample = false;
+        isAbsent = false;
+        isOnBreak = false;
+    }
+
+    /**
+     * Feeds one detection result.
+     *
+     * @param facePresent whether any face was found in the frame
+     * @param nowNanos    monotonic timestamp of the frame, e.g. {@link System#nanoTime()}
+     * @return true while a break is in progress
+     */
+    public boolean onSample(boolean facePresent, long nowNanos) {
+        if (!rules.isEnabled()) return false;
+
+        if (isOnBreak) {
+            if (nowNanos - breakEndsAtNanos < 0) {
+                remember(facePresent, nowNanos);
+                return true;
+            }
+            isOnBreak = false;
+            screenTimeNanos = 0;
+        }
+
+        if (hasLastSample) {
+            long delta = nowNanos - lastSampleNanos;
+            if (delta > MAX_SAMPLE_GAP_NANOS) {
+                // Detection was paused; a long enough pause counts as a break
+                if (delta >= rules.breakNanos) screenTimeNanos = 0;
+            } else if (facePresent && lastFacePresent) {
+                screenTimeNanos += delta;
+            }
+        }
+
+        if (facePresent) {
+            isAbsent = false;
+        } else if (!isAbsent) {
+            isAbsent = true;
+            absentSinceNanos = nowNanos;
+        } else if (nowNanos - absentSinceNanos >= rules.breakNanos) {
+            // Looking away for a full break resets the clock
+            screenTimeNanos = 0;
+        }
+        remember(facePresent, nowNanos);
+
+        if (screenTimeNanos >= rules.workNanos) {
+            isOnBreak = true;
+            breakEndsAtNanos = nowNanos + rules.breakNanos;
+            return true;
+        }
+        return false;
+    }
+
+    private void remember(boolean facePresent, long nowNanos) {
+        lastSampleNanos = nowNanos;
+        lastFacePresent = facePresent;
+        hasLastSample = true;
+    }
+
+    public long getScreenTimeNanos() {
+        return screenTimeNanos;
+    }
+
+    public boolean isOnBreak() {
+        return isOnBreak;
+    }
+}
@@ -0,0 +1,61 @@
+package com.facedistanceblur;
+
+/**
+ * Detector-independent view of one face, so the service logic does not depend on
+ * ML Kit types and can be driven by a scripted backend.
+ */
+public final class DetectedFace {
+    public static final int NO_TRACKING_ID = -1;
+
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+    private final int trackingId;
+    private final float[] landmarks;
+
+    public DetectedFace(int left, int top, int right, int bottom, int trackingId) {
+        this(left, top, right, bottom, trackingId, null);
+    }
+
+    /**
+     * @param landmarks x, y pairs in {@link FaceSignature} order, or null when landmark
+     *                  detection was off or some landmarks were not found
+     */
+    public DetectedFace(int left, int top, int right, int bottom, int trackingId, float[] landmarks) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.trackingId = trackingId;
+        this.landmarks = landmarks;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getTrackingId() {
+        return trackingId;
+    }
+
+    public float[] getLandmarks() {
+        return landmarks;
+    }
+
+    public long getArea() {
+        return (long) (right - left) * (bottom - top);
+    }
+}
@@ -0,0 +1,30 @@
+package com.facedistanceblur;
+
+import java.util.List;
+
+/**
+ * Runs face detection on a pooled frame. Implementations must deliver exactly one
+ * callback per frame on the main thread, including frames dropped because the detector
+ * was rebuilt or closed; the caller keeps ownership of the lease and releases it once
+ * the callback has run.
+ */
+public interface FaceDetectionBackend {
+    interface Callback {
+        void onFaces(List<DetectedFace> faces);
+
+        void onFailure(Exception e);
+    }
+
+    void detect(FrameBufferPool.Lease frame, Callback callback);
+
+    /** Applies a new policy, rebuilding the underlying detector if its options changed. */
+    void applyPolicy(PolicyBundle policy);
+
+    /**
+     * Turns landmark detection on or off. Landmarks cost detector time, so they are only
+     * enabled while a face is being identified. Tracking IDs may restart afterwards.
+     */
+    void setLandmarksEnabled(boolean enabled);
+
+    void close();
+}
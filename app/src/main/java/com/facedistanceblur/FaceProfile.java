@@ -0,0 +1,30 @@
+package com.facedistanceblur;
+
+import java.util.Arrays;
+
+public final class FaceProfile {
+    private final String name;
+    private final float safeDistanceThreshold;
+    private final float[] signature;
+
+    public FaceProfile(String name, float safeDistanceThreshold, float[] signature) {
+        if (signature.length != FaceSignature.LENGTH) {
+            throw new IllegalArgumentException("Signature must have " + FaceSignature.LENGTH + " values");
+        }
+        this.name = name;
+        this.safeDistanceThreshold = safeDistanceThreshold;
+        this.signature = Arrays.copyOf(signature, signature.length);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public float getSafeDistanceThreshold() {
+        return safeDistanceThreshold;
+    }
+
+    public float[] getSignature() {
+        return Arrays.copyOf(signature, signature.length);
+    }
+}
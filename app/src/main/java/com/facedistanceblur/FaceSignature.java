@@ -0,0 +1,51 @@
+package com.facedistanceblur;
+
+/**
+ * Compact landmark-geometry signature of a face: the pairwise distances between six
+ * frontal landmarks, divided by the distance between the eyes so the vector does not
+ * depend on face size, position or in-plane rotation. Not a biometric identifier, only
+ * good enough to tell apart the handful of people sharing one device.
+ */
+public final class FaceSignature {
+    public static final int LEFT_EYE = 0;
+    public static final int RIGHT_EYE = 1;
+    public static final int NOSE_BASE = 2;
+    public static final int MOUTH_LEFT = 3;
+    public static final int MOUTH_RIGHT = 4;
+    public static final int MOUTH_BOTTOM = 5;
+    public static final int LANDMARK_COUNT = 6;
+
+    // Every landmark pair except the eye-eye reference distance
+    public static final int LENGTH = LANDMARK_COUNT * (LANDMARK_COUNT - 1) / 2 - 1;
+
+    private FaceSignature() {
+    }
+
+    /**
+     * @param points landmark coordinates as x, y pairs in the order of the constants above
+     * @return the signature, or null when the eyes coincide and no scale can be derived
+     */
+    public static float[] fromLandmarks(float[] points) {
+        if (points.length != LANDMARK_COUNT * 2) {
+            throw new IllegalArgumentException("Expected " + LANDMARK_COUNT + " landmarks");
+        }
+        float eyeDistance = distance(points, LEFT_EYE, RIGHT_EYE);
+        if (eyeDistance <= 0f) return null;
+
+        float[] signature = new float[LENGTH];
+        int n = 0;
+        for (int i = 0; i < LANDMARK_COUNT; i++) {
+            for (int j = i + 1; j < LANDMARK_COUNT; j++) {
+                if (i == LEFT_EYE && j == RIGHT_EYE) continue;
+                signature[n++] = distance(points, i, j) / eyeDistance;
+            }
+        }
+        return signature;
+    }
+
+    private static float distance(float[] points, int a, int b) {
+        float dx = points[a * 2] - points[b * 2];
+        float dy = points[a * 2 + 1] - points[b * 2 + 1];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
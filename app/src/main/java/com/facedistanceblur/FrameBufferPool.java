@@ -0,0 +1,132 @@
+package com.facedistanceblur;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size pool of direct frame buffers handed out as reference-counted leases.
+ * The pool holds one slot per frame allowed in flight, so an exhausted pool means
+ * the pipeline is saturated and the caller should drop the frame.
+ */
+public class FrameBufferPool {
+    private final ArrayBlockingQueue<Lease> freeLeases;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final int capacity;
+
+    public FrameBufferPool(int maxFramesInFlight) {
+        if (maxFramesInFlight <= 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must be positive");
+        }
+        capacity = maxFramesInFlight;
+        freeLeases = new ArrayBlockingQueue<>(maxFramesInFlight);
+        for (int i = 0; i < maxFramesInFlight; i++) {
+            freeLeases.add(new Lease());
+        }
+    }
+
+    /**
+     * Returns a lease whose buffer holds at least {@code size} bytes, or null when
+     * every slot is still held by an earlier frame. The caller owns one reference.
+     */
+    public Lease acquire(int size, int width, int height, int rotationDegrees, long timestampNanos) {
+        Lease lease = freeLeases.poll();
+        if (lease == null) return null;
+
+        lease.prepare(size, width, height, rotationDegrees, timestampNanos);
+        outstanding.incrementAndGet();
+        return lease;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Number of leases handed out and not yet fully released. Zero when idle. */
+    public int getOutstandingLeases() {
+        return outstanding.get();
+    }
+
+    private void recycle(Lease lease) {
+        outstanding.decrementAndGet();
+        freeLeases.offer(lease);
+    }
+
+    public final class Lease {
+        private final AtomicInteger refCount = new AtomicInteger();
+        private ByteBuffer buffer;
+        private int width;
+        private int height;
+        private int rotationDegrees;
+        private long timestampNanos;
+
+        private Lease() {
+        }
+
+        private void prepare(int size, int width, int height, int rotationDegrees, long timestampNanos) {
+            // Buffers only grow, so steady-state frames of the same size never allocate
+            if (buffer == null || buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+            buffer.clear();
+            buffer.limit(size);
+            this.width = width;
+            this.height = height;
+            this.rotationDegrees = rotationDegrees;
+            this.timestampNanos = timestampNanos;
+            refCount.set(1);
+        }
+
+        /** Adds a reference for another stage that reads this frame. */
+        public Lease retain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    throw new IllegalStateException("Lease already released");
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return this;
+                }
+            }
+        }
+
+        /** Drops one reference; the last release returns the buffer to the pool. */
+        public void release() {
+            int count = refCount.decrementAndGet();
+            if (count == 0) {
+                recycle(this);
+            } else if (count < 0) {
+                refCount.incrementAndGet();
+                throw new IllegalStateException("Lease released more times than retained");
+            }
+        }
+
+        /**
+         * The shared frame planes. Stages must not move the position of this buffer;
+         * use {@link ByteBuffer#duplicate()} for relative reads.
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getRotationDegrees() {
+            return rotationDegrees;
+        }
+
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        public int getRefCount() {
+            return refCount.get();
+        }
+    }
+}
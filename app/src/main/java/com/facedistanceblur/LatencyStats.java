@@ -0,0 +1,61 @@
+package com.facedistanceblur;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a fixed ring and reports percentiles over
+ * them. Recording never allocates; percentile queries sort a copy.
+ */
+public class LatencyStats {
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyStats(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        samples = new long[capacity];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Nearest-rank percentile of the retained samples in nanoseconds, or -1 when no
+     * samples have been recorded.
+     *
+     * @param percentile value in (0, 100]
+     */
+    public synchronized long percentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in (0, 100]");
+        }
+        if (count == 0) return -1;
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        count = 0;
+    }
+
+    public String summary() {
+        if (getCount() == 0) return "n=0";
+        return "n=" + getCount()
+            + " p50=" + percentile(50) / 1_000_000.0 + "ms"
+            + " p90=" + percentile(90) / 1_000_000.0 + "ms"
+            + " p99=" + percentile(99) / 1_000_000.0 + "ms";
+    }
+}
@@ -0,0 +1,144 @@
+package com.facedistanceblur;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.face.FaceLandmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+public class MlKitFaceBackend implements FaceDetectionBackend {
+    // Indexed by FaceSignature landmark constants
+    private static final int[] SIGNATURE_LANDMARKS = {
+        FaceLandmark.LEFT_EYE,
+        FaceLandmark.RIGHT_EYE,
+        FaceLandmark.NOSE_BASE,
+        FaceLandmark.MOUTH_LEFT,
+        FaceLandmark.MOUTH_RIGHT,
+        FaceLandmark.MOUTH_BOTTOM
+    };
+
+    private volatile FaceDetector faceDetector;
+    private PolicyBundle policy;
+    private boolean landmarksEnabled;
+    private volatile boolean closed;
+
+    public MlKitFaceBackend(PolicyBundle policy) {
+        this.policy = policy;
+        faceDetector = createFaceDetector(policy, false);
+    }
+
+    private static FaceDetector createFaceDetector(PolicyBundle policy, boolean landmarksEnabled) {
+        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
+                .setPerformanceMode(policy.isAccurateMode()
+                        ? FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE
+                        : FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .setLandmarkMode(landmarksEnabled
+                        ? FaceDetectorOptions.LANDMARK_MODE_ALL
+                        : FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setMinFaceSize(policy.getMinFaceSize())
+                .enableTracking()
+                .build();
+        
+        return FaceDetection.getClient(options);
+    }
+
+    @Override
+    public void detect(FrameBufferPool.Lease frame, Callback callback) {
+        Task<List<Face>> detection;
+        if (closed) {
+            // Reported like a frame cancelled by close() so the caller still gets its callback
+            detection = Tasks.forCanceled();
+        } else {
+            InputImage image = InputImage.fromByteBuffer(
+                frame.getBuffer(),
+                frame.getWidth(),
+                frame.getHeight(),
+                frame.getRotationDegrees(),
+                InputImage.IMAGE_FORMAT_NV21
+            );
+            detection = faceDetector.process(image);
+        }
+
+        // Closing a detector cancels its pending tasks, which fire neither success nor
+        // failure listeners, so completion is handled in one place
+        detection.addOnCompleteListener(task -> {
+            if (task.isCanceled()) {
+                callback.onFailure(new CancellationException("Detector closed before the frame finished"));
+            } else if (task.isSuccessful()) {
+                callback.onFaces(toDetectedFaces(task.getResult()));
+            } else {
+                callback.onFailure(task.getException());
+            }
+        });
+    }
+
+    private static List<DetectedFace> toDetectedFaces(List<Face> faces) {
+        List<DetectedFace> result = new ArrayList<>(faces.size());
+        for (Face face : faces) {
+            Integer trackingId = face.getTrackingId();
+            result.add(new DetectedFace(
+                face.getBoundingBox().left,
+                face.getBoundingBox().top,
+                face.getBoundingBox().right,
+                face.getBoundingBox().bottom,
+                trackingId != null ? trackingId : DetectedFace.NO_TRACKING_ID,
+                signatureLandmarks(face)
+            ));
+        }
+        return result;
+    }
+
+    private static float[] signatureLandmarks(Face face) {
+        float[] points = new float[SIGNATURE_LANDMARKS.length * 2];
+        for (int i = 0; i < SIGNATURE_LANDMARKS.length; i++) {
+            FaceLandmark landmark = face.getLandmark(SIGNATURE_LANDMARKS[i]);
+            if (landmark == null) return null;
+            points[i * 2] = landmark.getPosition().x;
+            points[i * 2 + 1] = landmark.getPosition().y;
+        }
+        return points;
+    }
+
+    // Called on the analyzer thread so no frame starts on a closed detector
+    @Override
+    public void applyPolicy(PolicyBundle newPolicy) {
+        if (closed) return;
+        if (!newPolicy.detectorOptionsDiffer(policy)) {
+            policy = newPolicy;
+            return;
+        }
+        policy = newPolicy;
+        rebuildDetector();
+    }
+
+    // Called on the analyzer thread, like applyPolicy
+    @Override
+    public void setLandmarksEnabled(boolean enabled) {
+        if (closed || enabled == landmarksEnabled) return;
+        landmarksEnabled = enabled;
+        rebuildDetector();
+    }
+
+    private void rebuildDetector() {
+        FaceDetector oldDetector = faceDetector;
+        faceDetector = createFaceDetector(policy, landmarksEnabled);
+        oldDetector.close();
+    }
+
+    // Later calls are no-ops, so changes still queued at shutdown cannot reopen a detector
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        faceDetector.close();
+    }
+}
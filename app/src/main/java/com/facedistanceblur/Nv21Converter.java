@@ -0,0 +1,117 @@
+package com.facedistanceblur;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs the planes of a YUV_420_888 frame into NV21 for the detector. Whether the
+ * chroma planes share one interleaved VU buffer is fixed for a camera stream, so it is
+ * probed once per plane layout rather than on every frame.
+ */
+public class Nv21Converter {
+    private int layoutWidth = -1;
+    private int layoutHeight;
+    private int layoutURowStride;
+    private int layoutVRowStride;
+    private int layoutUPixelStride;
+    private int layoutVPixelStride;
+    private boolean layoutInterleaved;
+
+    /** Writes {@code width} x {@code height} NV21 into {@code out} and flips it for reading. */
+    public void convert(int width, int height, ImageProxy.PlaneProxy[] planes, ByteBuffer out) {
+        // Luma rows, skipping any row padding
+        ByteBuffer yBuffer = planes[0].getBuffer().duplicate();
+        int yRowStride = planes[0].getRowStride();
+        if (yRowStride == width) {
+            yBuffer.limit(width * height);
+            yBuffer.position(0);
+            out.put(yBuffer);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int start = row * yRowStride;
+                yBuffer.limit(start + width);
+                yBuffer.position(start);
+                out.put(yBuffer);
+            }
+        }
+
+        // Chroma interleaved as VU
+        ImageProxy.PlaneProxy uPlane = planes[1];
+        ImageProxy.PlaneProxy vPlane = planes[2];
+        ByteBuffer uBuffer = uPlane.getBuffer();
+        ByteBuffer vBuffer = vPlane.getBuffer();
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        if (isInterleavedVu(width, height, uPlane, vPlane)) {
+            // The V plane already is NV21 chroma, copy it row by row
+            ByteBuffer vu = vBuffer.duplicate();
+            int rowStride = vPlane.getRowStride();
+            for (int row = 0; row < chromaHeight; row++) {
+                int start = row * rowStride;
+                // The V plane view stops one byte short of the final U sample
+                int length = row == chromaHeight - 1 ? chromaWidth * 2 - 1 : chromaWidth * 2;
+                vu.limit(start + length);
+                vu.position(start);
+                out.put(vu);
+            }
+            out.put(uBuffer.get((chromaHeight - 1) * uPlane.getRowStride()
+                + (chromaWidth - 1) * uPlane.getPixelStride()));
+        } else {
+            int uRowStride = uPlane.getRowStride();
+            int uPixelStride = uPlane.getPixelStride();
+            int vRowStride = vPlane.getRowStride();
+            int vPixelStride = vPlane.getPixelStride();
+            for (int row = 0; row < chromaHeight; row++) {
+                for (int col = 0; col < chromaWidth; col++) {
+                    out.put(vBuffer.get(row * vRowStride + col * vPixelStride));
+                    out.put(uBuffer.get(row * uRowStride + col * uPixelStride));
+                }
+            }
+        }
+        out.flip();
+    }
+
+    private boolean isInterleavedVu(int width, int height, ImageProxy.PlaneProxy uPlane,
+                                    ImageProxy.PlaneProxy vPlane) {
+        if (width != layoutWidth || height != layoutHeight
+                || uPlane.getRowStride() != layoutURowStride
+                || vPlane.getRowStride() != layoutVRowStride
+                || uPlane.getPixelStride() != layoutUPixelStride
+                || vPlane.getPixelStride() != layoutVPixelStride) {
+            layoutInterleaved = probeInterleavedVu(uPlane, vPlane);
+            layoutWidth = width;
+            layoutHeight = height;
+            layoutURowStride = uPlane.getRowStride();
+            layoutVRowStride = vPlane.getRowStride();
+            layoutUPixelStride = uPlane.getPixelStride();
+            layoutVPixelStride = vPlane.getPixelStride();
+        }
+        return layoutInterleaved;
+    }
+
+    /**
+     * True when the U and V planes are views over one interleaved VU buffer, as most
+     * devices deliver them. Probed by flipping a byte of V and reading it back through U.
+     */
+    static boolean probeInterleavedVu(ImageProxy.PlaneProxy uPlane, ImageProxy.PlaneProxy vPlane) {
+        if (uPlane.getPixelStride() != 2 || vPlane.getPixelStride() != 2
+                || uPlane.getRowStride() != vPlane.getRowStride()) {
+            return false;
+        }
+        ByteBuffer uBuffer = uPlane.getBuffer();
+        ByteBuffer vBuffer = vPlane.getBuffer();
+        if (vBuffer.isReadOnly() || vBuffer.capacity() < 2 || uBuffer.capacity() < 1) {
+            return false;
+        }
+
+        byte original = vBuffer.get(1);
+        byte probe = (byte) ~original;
+        try {
+            vBuffer.put(1, probe);
+            return uBuffer.get(0) == probe;
+        } finally {
+            vBuffer.put(1, original);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.facedistanceblur;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable snapshot of the detection policy. Bundles are plain ASCII files of
+ * {@code key=value} lines; blank lines and lines starting with '#' are skipped and
+ * unknown keys are ignored so older builds can read newer bundles.
+ *
+ * <pre>
+ * version=3
+ * safe_distance_threshold=0.55
+ * min_face_size=0.15
+ * performance_mode=fast
+ * </pre>
+ */
+public final class PolicyBundle {
+    public static final String MODE_FAST = "fast";
+    public static final String MODE_ACCURATE = "accurate";
+
+    // Matches the values the service shipped with before bundles existed
+    public static final PolicyBundle DEFAULT = new PolicyBundle(0, 0.6f, 0.15f, false);
+
+    private final int version;
+    private final float safeDistanceThreshold;
+    private final float minFaceSize;
+    private final boolean accurateMode;
+
+    public PolicyBundle(int version, float safeDistanceThreshold, float minFaceSize,
+                        boolean accurateMode) {
+        this.version = version;
+        this.safeDistanceThreshold = safeDistanceThreshold;
+        this.minFaceSize = minFaceSize;
+        this.accurateMode = accurateMode;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public float getSafeDistanceThreshold() {
+        return safeDistanceThreshold;
+    }
+
+    public float getMinFaceSize() {
+        return minFaceSize;
+    }
+
+    public boolean isAccurateMode() {
+        return accurateMode;
+    }
+
+    /** True when switching to {@code other} requires a new face detector client. */
+    public boolean detectorOptionsDiffer(PolicyBundle other) {
+        return minFaceSize != other.minFaceSize || accurateMode != other.accurateMode;
+    }
+
+    /**
+     * Parses a bundle, falling back to {@link #DEFAULT} for keys that are absent.
+     *
+     * @throws IllegalArgumentException if the bundle has no version or a value is malformed
+     */
+    public static PolicyBundle parse(byte[] data) {
+        int version = -1;
+        float threshold = DEFAULT.safeDistanceThreshold;
+        float minFaceSize = DEFAULT.minFaceSize;
+        boolean accurateMode = DEFAULT.accurateMode;
+
+        int pos = 0;
+        int length = data.length;
+        while (pos < length) {
+            int lineEnd = pos;
+            while (lineEnd < length && data[lineEnd] != '\n') lineEnd++;
+
+            int start = skipSpaces(data, pos, lineEnd);
+            int end = trimEnd(data, start, lineEnd);
+            pos = lineEnd + 1;
+            if (start == end || data[start] == '#') continue;
+
+            int eq = start;
+            while (eq < end && data[eq] != '=') eq++;
+            if (eq == end) {
+                throw new IllegalArgumentException("Missing '=' in policy bundle line");
+            }
+            int keyEnd = trimEnd(data, start, eq);
+            int valueStart = skipSpaces(data, eq + 1, end);
+
+            if (keyEquals(data, start, keyEnd, "version")) {
+                version = parseInt(data, valueStart, end);
+            } else if (keyEquals(data, start, keyEnd, "safe_distance_threshold")) {
+                threshold = parseRatio(data, valueStart, end);
+            } else if (keyEquals(data, start, keyEnd, "min_face_size")) {
+                minFaceSize = parseRatio(data, valueStart, end);
+            } else if (keyEquals(data, start, keyEnd, "performance_mode")) {
+                if (keyEquals(data, valueStart, end, MODE_ACCURATE)) {
+                    accurateMode = true;
+                } else if (keyEquals(data, valueStart, end, MODE_FAST)) {
+                    accurateMode = false;
+                } else {
+                    throw new IllegalArgumentException("Unknown performance_mode: "
+                        + new String(data, valueStart, end - valueStart, StandardCharsets.US_ASCII));
+                }
+            }
+        }
+
+        if (version < 0) {
+            throw new IllegalArgumentException("Policy bundle has no version");
+        }
+        return new PolicyBundle(version, threshold, minFaceSize, accurateMode);
+    }
+
+    private static int skipSpaces(byte[] data, int from, int to) {
+        while (from < to && (data[from] == ' ' || data[from] == '\t')) from++;
+        return from;
+    }
+
+    private static int trimEnd(byte[] data, int from, int to) {
+        while (to > from && (data[to - 1] == ' ' || data[to - 1] == '\t' || data[to - 1] == '\r')) to--;
+        return to;
+    }
+
+    private static boolean keyEquals(byte[] data, int start, int end, String key) {
+        if (end - start != key.length()) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (data[start + i] != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int parseInt(byte[] data, int start, int end) {
+        if (start == end) {
+            throw new IllegalArgumentException("Empty integer in policy bundle");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new IllegalArgumentException("Invalid integer in policy bundle");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Ratios are written as plain decimals such as 0.6 or 1, no exponent or sign.
+    // Zero is rejected: a zero threshold would blur on every face.
+    private static float parseRatio(byte[] data, int start, int end) {
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (int i = start; i < end; i++) {
+            byte b = data[i];
+            if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                // Digits beyond float precision are dropped
+                if (mantissa >= 100_000_000L && !seenDot) {
+                    throw new IllegalArgumentException("Ratio out of range in policy bundle");
+                }
+                if (mantissa < 100_000_000L) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenDot) fractionDigits++;
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid number in policy bundle");
+            }
+        }
+        if (!seenDigit) {
+            throw new IllegalArgumentException("Invalid number in policy bundle");
+        }
+        float value = (float) (mantissa / Math.pow(10, fractionDigits));
+        if (value <= 0f || value > 1f) {
+            throw new IllegalArgumentException("Ratio out of range in policy bundle: " + value);
+        }
+        return value;
+    }
+}
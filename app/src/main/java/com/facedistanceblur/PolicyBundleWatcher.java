@@ -0,0 +1,98 @@
+package com.facedistanceblur;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Watches the app files directory for a policy bundle dropped in by MDM and loads it
+ * into a {@link PolicyStore}. The directory is watched rather than the file so that
+ * bundles written elsewhere and renamed into place are picked up too.
+ */
+public class PolicyBundleWatcher extends FileObserver {
+    private static final String TAG = "PolicyBundleWatcher";
+    public static final String BUNDLE_FILE_NAME = "policy_bundle.cfg";
+    private static final int MAX_BUNDLE_BYTES = 16 * 1024;
+
+    public interface Listener {
+        void onPolicyChanged(PolicyBundle previous, PolicyBundle current);
+    }
+
+    private final File bundleFile;
+    private final PolicyStore store;
+    private final Listener listener;
+
+    // The File constructor needs API 29 and a subclass cannot pick its super constructor
+    // at runtime, so the path constructor stays while minSdk is below 29
+    @SuppressWarnings("deprecation")
+    public PolicyBundleWatcher(File directory, PolicyStore store, Listener listener) {
+        super(directory.getPath(), CLOSE_WRITE | MOVED_TO);
+        this.bundleFile = new File(directory, BUNDLE_FILE_NAME);
+        this.store = store;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onEvent(int event, String path) {
+        if (BUNDLE_FILE_NAME.equals(path)) {
+            reload();
+        }
+    }
+
+    /**
+     * Installs the bundle already on disk, if any, without notifying the listener.
+     * Meant for startup, before the components the listener touches exist.
+     */
+    public void loadInitial() {
+        PolicyBundle bundle = load();
+        if (bundle != null && store.update(bundle) != null) {
+            Log.d(TAG, "Policy bundle v" + bundle.getVersion() + " loaded");
+        }
+    }
+
+    /** Loads the bundle file if present and notifies the listener when it was applied. */
+    public void reload() {
+        PolicyBundle bundle = load();
+        if (bundle == null) return;
+
+        PolicyBundle previous = store.update(bundle);
+        if (previous != null) {
+            Log.d(TAG, "Policy bundle v" + bundle.getVersion() + " applied");
+            listener.onPolicyChanged(previous, bundle);
+        }
+    }
+
+    private PolicyBundle load() {
+        if (!bundleFile.isFile()) return null;
+
+        try {
+            return PolicyBundle.parse(readBundle());
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Ignoring policy bundle: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] readBundle() throws IOException {
+        long length = bundleFile.length();
+        if (length > MAX_BUNDLE_BYTES) {
+            throw new IOException("Bundle too large: " + length + " bytes");
+        }
+        byte[] data = new byte[(int) length];
+        try (FileInputStream in = new FileInputStream(bundleFile)) {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            if (read < data.length) {
+                throw new IOException("Bundle truncated while reading");
+            }
+        }
+        return data;
+    }
+}
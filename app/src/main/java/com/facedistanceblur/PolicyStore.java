@@ -0,0 +1,36 @@
+package com.facedistanceblur;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active {@link PolicyBundle}. Readers take one snapshot per frame, so a
+ * swap landing mid-frame only affects the next frame.
+ */
+public class PolicyStore {
+    private final AtomicReference<PolicyBundle> current;
+
+    public PolicyStore(PolicyBundle initial) {
+        current = new AtomicReference<>(initial);
+    }
+
+    public PolicyBundle get() {
+        return current.get();
+    }
+
+    /**
+     * Installs {@code bundle} if its version is newer than the active one.
+     *
+     * @return the bundle that was replaced, or null if {@code bundle} was stale
+     */
+    public PolicyBundle update(PolicyBundle bundle) {
+        while (true) {
+            PolicyBundle active = current.get();
+            if (bundle.getVersion() <= active.getVersion()) {
+                return null;
+            }
+            if (current.compareAndSet(active, bundle)) {
+                return active;
+            }
+        }
+    }
+}
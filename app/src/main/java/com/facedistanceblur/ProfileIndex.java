@@ -0,0 +1,57 @@
+package com.facedistanceblur;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable nearest-neighbour index over enrolled profiles. Profiles per device are few,
+ * so a linear scan over one contiguous array beats any tree structure here.
+ */
+public final class ProfileIndex {
+    /**
+     * Match cutoff for {@link #findNearest}. Derived in ProfileMatchingBenchmarkTest from
+     * synthetic faces with 1% landmark jitter, where it keeps false matches below 1% while
+     * accepting over 95% of genuine probes. Retune if real landmarks prove noisier.
+     */
+    public static final float DEFAULT_MAX_DISTANCE = 0.15f;
+
+    public static final ProfileIndex EMPTY = new ProfileIndex(Collections.<FaceProfile>emptyList());
+
+    private final FaceProfile[] profiles;
+    private final float[] signatures;
+
+    public ProfileIndex(List<FaceProfile> profiles) {
+        this.profiles = profiles.toArray(new FaceProfile[0]);
+        signatures = new float[this.profiles.length * FaceSignature.LENGTH];
+        for (int i = 0; i < this.profiles.length; i++) {
+            float[] signature = this.profiles[i].getSignature();
+            System.arraycopy(signature, 0, signatures, i * FaceSignature.LENGTH, FaceSignature.LENGTH);
+        }
+    }
+
+    public int size() {
+        return profiles.length;
+    }
+
+    /**
+     * Returns the profile whose signature is closest to {@code signature} in Euclidean
+     * distance, or null if none lies within {@code maxDistance}.
+     */
+    public FaceProfile findNearest(float[] signature, float maxDistance) {
+        float bestDistanceSq = maxDistance * maxDistance;
+        FaceProfile best = null;
+        for (int i = 0; i < profiles.length; i++) {
+            int offset = i * FaceSignature.LENGTH;
+            float distanceSq = 0f;
+            for (int k = 0; k < FaceSignature.LENGTH && distanceSq <= bestDistanceSq; k++) {
+                float diff = signatures[offset + k] - signature[k];
+                distanceSq += diff * diff;
+            }
+            if (distanceSq <= bestDistanceSq) {
+                bestDistanceSq = distanceSq;
+                best = profiles[i];
+            }
+        }
+        return best;
+    }
+}
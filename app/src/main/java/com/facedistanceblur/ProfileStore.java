@@ -0,0 +1,95 @@
+package com.facedistanceblur;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists face profiles and pending enrollment requests on the device. Kept apart from
+ * "UserPrefs" so signing out of the app account does not drop the household's profiles.
+ */
+public class ProfileStore {
+    private static final String TAG = "ProfileStore";
+    public static final String PREFS_NAME = "FaceProfiles";
+    public static final String KEY_PROFILES = "profiles";
+    public static final String KEY_PENDING_NAME = "pendingName";
+    private static final String KEY_PENDING_THRESHOLD = "pendingThreshold";
+
+    private final SharedPreferences prefs;
+
+    public ProfileStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public SharedPreferences getPreferences() {
+        return prefs;
+    }
+
+    // One profile per line: name, threshold and comma-separated signature, tab-separated
+    public List<FaceProfile> load() {
+        List<FaceProfile> profiles = new ArrayList<>();
+        String encoded = prefs.getString(KEY_PROFILES, "");
+        for (String line : encoded.split("\n")) {
+            if (line.isEmpty()) continue;
+            try {
+                String[] fields = line.split("\t");
+                String[] values = fields[2].split(",");
+                float[] signature = new float[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    signature[i] = Float.parseFloat(values[i]);
+                }
+                profiles.add(new FaceProfile(fields[0], Float.parseFloat(fields[1]), signature));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Skipping unreadable profile: " + e.getMessage());
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Saves an enrolled profile and clears the pending request in a single edit, so
+     * listeners never see the new profile with the request still pending.
+     */
+    public void completeEnrollment(FaceProfile profile) {
+        StringBuilder line = new StringBuilder()
+            .append(profile.getName().replaceAll("[\t\n]", " "))
+            .append('\t')
+            .append(profile.getSafeDistanceThreshold())
+            .append('\t');
+        float[] signature = profile.getSignature();
+        for (int i = 0; i < signature.length; i++) {
+            if (i > 0) line.append(',');
+            line.append(signature[i]);
+        }
+
+        String encoded = prefs.getString(KEY_PROFILES, "");
+        prefs.edit()
+            .putString(KEY_PROFILES, encoded.isEmpty() ? line.toString() : encoded + "\n" + line)
+            .remove(KEY_PENDING_NAME)
+            .remove(KEY_PENDING_THRESHOLD)
+            .apply();
+    }
+
+    public void clear() {
+        prefs.edit().clear().apply();
+    }
+
+    /** Asks the service to enroll the next face it sees under {@code name}. */
+    public void requestEnrollment(String name, float safeDistanceThreshold) {
+        prefs.edit()
+            .putString(KEY_PENDING_NAME, name)
+            .putFloat(KEY_PENDING_THRESHOLD, safeDistanceThreshold)
+            .apply();
+    }
+
+    public String getPendingEnrollmentName() {
+        return prefs.getString(KEY_PENDING_NAME, null);
+    }
+
+    public float getPendingEnrollmentThreshold() {
+        return prefs.getFloat(KEY_PENDING_THRESHOLD, PolicyBundle.DEFAULT.getSafeDistanceThreshold());
+    }
+}
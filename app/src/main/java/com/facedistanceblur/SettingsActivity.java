@@ -3,16 +3,27 @@ package com.facedistanceblur;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.view.inputmethod.EditorInfo;
 import android.widget.CompoundButton;
+import android.widget.EditText;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Button;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 
+import java.util.List;
+
 public class SettingsActivity extends AppCompatActivity {
     private Switch switchTheme;
+    private Switch switchBreaks;
+    private EditText etBreakWorkMinutes, etBreakSeconds;
+    private EditText etProfileName, etProfileThreshold;
+    private Button btnEnrollProfile, btnClearProfiles;
+    private TextView tvProfiles;
+    private ProfileStore profileStore;
     private Button btnLogout;
     private TextView tvAppInfo;
 
@@ -24,6 +35,14 @@ public class SettingsActivity extends AppCompatActivity {
         switchTheme = findViewById(R.id.switchTheme);
         btnLogout = findViewById(R.id.btnLogout);
         tvAppInfo = findViewById(R.id.tvAppInfo);
+        switchBreaks = findViewById(R.id.switchBreaks);
+        etBreakWorkMinutes = findViewById(R.id.etBreakWorkMinutes);
+        etBreakSeconds = findViewById(R.id.etBreakSeconds);
+        etProfileName = findViewById(R.id.etProfileName);
+        etProfileThreshold = findViewById(R.id.etProfileThreshold);
+        btnEnrollProfile = findViewById(R.id.btnEnrollProfile);
+        btnClearProfiles = findViewById(R.id.btnClearProfiles);
+        tvProfiles = findViewById(R.id.tvProfiles);
 
         // Set switch state from preferences
         SharedPreferences prefs = getSharedPreferences("UserPrefs", MODE_PRIVATE);
@@ -39,6 +58,24 @@ public class SettingsActivity extends AppCompatActivity {
             prefs.edit().putBoolean("isDarkTheme", isChecked).apply();
         });
 
+        // Eye-strain break rules, read live by the accessibility service
+        switchBreaks.setChecked(prefs.getBoolean("breaksEnabled", false));
+        etBreakWorkMinutes.setText(String.valueOf(prefs.getInt("breakWorkMinutes", 20)));
+        etBreakSeconds.setText(String.valueOf(prefs.getInt("breakSeconds", 20)));
+        switchBreaks.setOnCheckedChangeListener((CompoundButton buttonView, boolean isChecked) ->
+            prefs.edit().putBoolean("breaksEnabled", isChecked).apply());
+        saveWhenEdited(etBreakWorkMinutes, prefs, "breakWorkMinutes");
+        saveWhenEdited(etBreakSeconds, prefs, "breakSeconds");
+
+        // Face profiles are enrolled by the running service from the next face it sees
+        profileStore = new ProfileStore(this);
+        btnEnrollProfile.setOnClickListener(v -> requestEnrollment());
+        btnClearProfiles.setOnClickListener(v -> {
+            profileStore.clear();
+            updateProfilesLabel();
+            Toast.makeText(this, "Profiles cleared", Toast.LENGTH_SHORT).show();
+        });
+
         btnLogout.setOnClickListener(v -> {
             getSharedPreferences("UserPrefs", MODE_PRIVATE).edit().clear().apply();
             Intent intent = new Intent(SettingsActivity.this, LoginActivity.class);
@@ -49,4 +86,75 @@ public class SettingsActivity extends AppCompatActivity {
 
         tvAppInfo.setText("Face Distance Blur\nVersion 1.0\n© 2024");
     }
-}
\ No newline at end of file
+
+    private void requestEnrollment() {
+        String name = etProfileName.getText().toString().trim();
+        if (name.isEmpty()) {
+            etProfileName.setError("Name is required");
+            return;
+        }
+
+        float threshold;
+        try {
+            threshold = Float.parseFloat(etProfileThreshold.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            threshold = -1f;
+        }
+        if (threshold < 0.1f || threshold > 1f) {
+            etProfileThreshold.setError("Enter a value between 0.1 and 1.0");
+            return;
+        }
+
+        profileStore.requestEnrollment(name, threshold);
+        Toast.makeText(this, "Look at the camera to enroll " + name, Toast.LENGTH_LONG).show();
+    }
+
+    private void updateProfilesLabel() {
+        List<FaceProfile> profiles = profileStore.load();
+        StringBuilder label = new StringBuilder("Profiles");
+        for (FaceProfile profile : profiles) {
+            label.append("\n").append(profile.getName())
+                .append(" (").append(profile.getSafeDistanceThreshold()).append(")");
+        }
+        tvProfiles.setText(label);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        updateProfilesLabel();
+    }
+
+    // Saved once editing finishes rather than per keystroke, so a half-typed value is
+    // never applied and the service does not restart its break count while the user types
+    private static void saveWhenEdited(EditText editText, SharedPreferences prefs, String key) {
+        editText.setOnFocusChangeListener((v, hasFocus) -> {
+            if (!hasFocus) {
+                saveBreakValue(editText, prefs, key);
+            }
+        });
+        editText.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_DONE) {
+                saveBreakValue(editText, prefs, key);
+            }
+            // Let the IME close the keyboard as usual
+            return false;
+        });
+    }
+
+    // Empty or zero input keeps the saved value
+    private static void saveBreakValue(EditText editText, SharedPreferences prefs, String key) {
+        int value = parsePositive(editText.getText().toString());
+        if (value > 0 && value != prefs.getInt(key, -1)) {
+            prefs.edit().putInt(key, value).apply();
+        }
+    }
+
+    private static int parsePositive(String text) {
+        try {
+            return Math.max(Integer.parseInt(text.trim()), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
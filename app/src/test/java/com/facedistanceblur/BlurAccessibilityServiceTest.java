@@ -0,0 +1,584 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+import android.widget.TextView;
+
+import androidx.camera.core.ImageProxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the real service logic with synthetic camera frames and a scripted detector,
+ * with no camera or ML Kit involved, and checks what reaches the WindowManager.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class BlurAccessibilityServiceTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+
+    // Regression gate for frame-to-overlay latency; generous enough for slow CI machines
+    private static final long MAX_P95_LATENCY_MILLIS = 50;
+
+    // Landmarks of two people in FaceSignature order, far enough apart to never match
+    private static final float[] ALEX_LANDMARKS = {
+        280, 200, 360, 200, 320, 250, 290, 290, 350, 290, 320, 300
+    };
+    private static final float[] SAM_LANDMARKS = {
+        280, 200, 360, 200, 320, 270, 295, 315, 345, 315, 320, 335
+    };
+
+    public static class HarnessService extends BlurAccessibilityService {
+        final FakeFaceDetectionBackend detector = new FakeFaceDetectionBackend();
+
+        @Override
+        FaceDetectionBackend createDetectionBackend(PolicyBundle policy) {
+            return detector;
+        }
+    }
+
+    private ServiceController<HarnessService> controller;
+    private HarnessService service;
+    private ShadowWindowManagerImpl windowManager;
+    private final ImageProxy.PlaneProxy[] cameraPlanes =
+        new SyntheticYuvFrame(WIDTH, HEIGHT, 0).interleavedVu(WIDTH, WIDTH);
+    private long frameClockNanos = TimeUnit.SECONDS.toNanos(1);
+
+    @Before
+    public void setUp() {
+        controller = Robolectric.buildService(HarnessService.class).create();
+        service = controller.get();
+        windowManager = Shadow.extract(service.getSystemService(Context.WINDOW_SERVICE));
+    }
+
+    @After
+    public void tearDown() {
+        if (controller != null) {
+            controller.destroy();
+        }
+    }
+
+    /** Hands one camera frame to the analyzer without delivering the detector result. */
+    private FakeImageProxy analyzeFrame() {
+        FakeImageProxy proxy = new FakeImageProxy(WIDTH, HEIGHT, cameraPlanes);
+        service.getFrameAnalyzer().analyze(proxy);
+        return proxy;
+    }
+
+    /** Runs one frame through the analyzer and delivers the detector result. */
+    private void injectFrame() {
+        assertEquals("Frame pool exhausted, a lease leaked", 0,
+            service.getFramePool().getOutstandingLeases());
+        analyzeFrame();
+        deliverResults();
+    }
+
+    /** Injects a frame one camera interval after the previous timed frame. */
+    private void injectTimedFrame() throws Exception {
+        injectTimedFrame(FRAME_INTERVAL_NANOS);
+    }
+
+    /**
+     * Injects a frame stamped {@code advanceNanos} after the previous timed frame, for
+     * logic that depends on frame time, and waits for any detector change it queued.
+     */
+    private void injectTimedFrame(long advanceNanos) throws Exception {
+        frameClockNanos += advanceNanos;
+        FrameBufferPool.Lease lease = service.getFramePool()
+            .acquire(WIDTH * HEIGHT * 3 / 2, WIDTH, HEIGHT, 0, frameClockNanos);
+        assertNotNull("Frame pool exhausted, a lease leaked", lease);
+        service.submitFrame(lease);
+        deliverResults();
+        flushAnalyzerThread();
+    }
+
+    private void deliverResults() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private void flushAnalyzerThread() throws Exception {
+        service.getAnalyzerExecutor().submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private void writePolicyBundle(String contents) throws IOException {
+        File file = new File(service.getFilesDir(), PolicyBundleWatcher.BUNDLE_FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(contents.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void saveProfile(String name, float threshold, float[] landmarks) {
+        new ProfileStore(service).completeEnrollment(
+            new FaceProfile(name, threshold, FaceSignature.fromLandmarks(landmarks)));
+        deliverResults();
+    }
+
+    private DetectedFace face(float ratio) {
+        return FakeFaceDetectionBackend.faceCovering(ratio, WIDTH, HEIGHT);
+    }
+
+    private DetectedFace face(float ratio, int trackingId, float[] landmarks) {
+        return FakeFaceDetectionBackend.faceCovering(ratio, WIDTH, HEIGHT, trackingId, landmarks);
+    }
+
+    private int overlayCount() {
+        return windowManager.getViews().size();
+    }
+
+    private String overlayMessage() {
+        TextView message = windowManager.getViews().get(0).findViewById(R.id.tvOverlayMessage);
+        return message.getText().toString();
+    }
+
+    private void enableBreaks(int workMinutes, int breakSeconds) {
+        service.getSharedPreferences("UserPrefs", Context.MODE_PRIVATE).edit()
+            .putBoolean("breaksEnabled", true)
+            .putInt("breakWorkMinutes", workMinutes)
+            .putInt("breakSeconds", breakSeconds)
+            .apply();
+        deliverResults();
+    }
+
+    /** Injects a timed frame {@code seconds} after the previous one showing one face. */
+    private void showFaceAfter(int seconds, float ratio) throws Exception {
+        service.detector.thenFaces(face(ratio));
+        injectTimedFrame(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void overlayFollowsFaceDistance() {
+        service.detector
+            .thenFaces(face(0.2f))
+            .thenFaces(face(0.8f))
+            .thenFaces(face(0.9f))
+            .thenFaces(face(0.3f))
+            .thenFaces(face(0.7f))
+            .thenNoFace();
+
+        injectFrame();
+        assertFalse(service.isBlurActive());
+        assertEquals(0, overlayCount());
+
+        injectFrame();
+        assertTrue(service.isBlurActive());
+        assertEquals(1, overlayCount());
+
+        // Still too close, the overlay is not added twice
+        injectFrame();
+        assertEquals(1, overlayCount());
+
+        injectFrame();
+        assertFalse(service.isBlurActive());
+        assertEquals(0, overlayCount());
+
+        injectFrame();
+        assertEquals(1, overlayCount());
+
+        // Face lost while blurred removes the overlay
+        injectFrame();
+        assertFalse(service.isBlurActive());
+        assertEquals(0, overlayCount());
+
+        assertEquals(0, service.detector.getRemainingSteps());
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+        assertEquals(4, service.getOverlayLatency().getCount());
+    }
+
+    @Test
+    public void largestFaceDecides() {
+        service.detector.thenFaces(face(0.1f), face(0.8f), face(0.2f));
+
+        injectFrame();
+
+        assertEquals(1, overlayCount());
+    }
+
+    @Test
+    public void detectionFailureKeepsStateAndReleasesFrame() {
+        service.detector
+            .thenFaces(face(0.8f))
+            .thenFailure(new IllegalStateException("scripted failure"));
+
+        injectFrame();
+        injectFrame();
+
+        assertTrue(service.isBlurActive());
+        assertEquals(1, overlayCount());
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+    }
+
+    @Test
+    public void destroyRemovesOverlay() {
+        service.detector.thenFaces(face(0.8f));
+        injectFrame();
+        assertEquals(1, overlayCount());
+
+        controller.destroy();
+        controller = null;
+
+        assertEquals(0, overlayCount());
+    }
+
+    @Test
+    public void frameToOverlayLatencyStaysWithinGate() {
+        final int warmUp = 20;
+        // Stays below the LatencyStats ring size so every sample is kept
+        final int measured = 200;
+
+        // Alternate near and far so every frame changes the overlay
+        for (int i = 0; i < warmUp + measured; i++) {
+            if (i % 2 == 0) {
+                service.detector.thenFaces(face(0.8f));
+            } else {
+                service.detector.thenFaces(face(0.2f));
+            }
+        }
+        for (int i = 0; i < warmUp; i++) {
+            injectFrame();
+        }
+        LatencyStats latency = service.getOverlayLatency();
+        latency.reset();
+
+        for (int i = 0; i < measured; i++) {
+            injectFrame();
+        }
+
+        assertEquals(measured, latency.getCount());
+        long p95Millis = TimeUnit.NANOSECONDS.toMillis(latency.percentile(95));
+        assertTrue("Frame-to-overlay latency " + latency.summary() + " exceeds p95 gate of "
+            + MAX_P95_LATENCY_MILLIS + "ms", p95Millis <= MAX_P95_LATENCY_MILLIS);
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+    }
+
+    @Test
+    public void analyzerCopiesFrameAndClosesProxy() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 7);
+        FakeImageProxy proxy = new FakeImageProxy(WIDTH, HEIGHT, frame.interleavedVu(WIDTH + 32, WIDTH + 32));
+        service.detector.thenNoFace();
+
+        service.getFrameAnalyzer().analyze(proxy);
+
+        // The proxy goes back to CameraX before detection finishes
+        assertTrue(proxy.isClosed());
+        assertArrayEquals(frame.toNv21(), service.detector.getLastFrame());
+
+        deliverResults();
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+    }
+
+    @Test
+    public void analyzerDropsFramesWhilePoolIsExhausted() {
+        service.detector
+            .thenFaces(face(0.8f))
+            .thenFaces(face(0.8f))
+            .thenFaces(face(0.8f));
+
+        FakeImageProxy first = analyzeFrame();
+        FakeImageProxy second = analyzeFrame();
+        FakeImageProxy dropped = analyzeFrame();
+
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+        assertTrue(dropped.isClosed());
+        assertEquals(2, service.detector.getFramesSeen());
+        assertEquals(1, service.detector.getRemainingSteps());
+        assertEquals(service.getFramePool().getCapacity(),
+            service.getFramePool().getOutstandingLeases());
+
+        deliverResults();
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+        assertEquals(1, overlayCount());
+    }
+
+    @Test
+    public void policyHotSwapAppliesToNextFrame() throws Exception {
+        service.detector
+            .thenFaces(face(0.5f))
+            .thenFaces(face(0.5f));
+
+        // Below the default threshold
+        injectFrame();
+        assertEquals(0, overlayCount());
+
+        writePolicyBundle("version=1\nsafe_distance_threshold=0.4\n");
+        service.getPolicyWatcher().reload();
+        flushAnalyzerThread();
+
+        assertEquals(1, service.detector.getAppliedPolicies().size());
+        assertEquals(1, service.detector.getAppliedPolicies().get(0).getVersion());
+
+        injectFrame();
+        assertEquals(1, overlayCount());
+        assertEquals(2, service.detector.getFramesSeen());
+    }
+
+    @Test
+    public void detectorRebuildCancelsFramesInFlightWithoutLeakingLeases() throws Exception {
+        saveProfile("alex", 0.3f, ALEX_LANDMARKS);
+        service.detector
+            .thenFaces(face(0.2f))
+            .thenFaces(face(0.8f));
+
+        analyzeFrame();
+        analyzeFrame();
+
+        // The first result asks for landmarks, which rebuilds the detector while the
+        // second frame is still in flight
+        shadowOf(Looper.getMainLooper()).runOneTask();
+        flushAnalyzerThread();
+        assertTrue(service.detector.isLandmarksEnabled());
+
+        deliverResults();
+        assertEquals(1, service.detector.getCancelledFrames());
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+        // The cancelled frame's faces never reached the service
+        assertEquals(0, overlayCount());
+    }
+
+    @Test
+    public void enrollmentAveragesFiveLandmarkFrames() throws Exception {
+        ProfileStore store = new ProfileStore(service);
+        store.requestEnrollment("alex", 0.3f);
+        deliverResults();
+        for (int i = 0; i < 6; i++) {
+            service.detector.thenFaces(face(0.2f, 1, ALEX_LANDMARKS));
+        }
+
+        // The first frame only turns landmarks on
+        injectTimedFrame();
+        assertTrue(service.detector.isLandmarksEnabled());
+
+        for (int i = 0; i < 4; i++) {
+            injectTimedFrame();
+        }
+        assertTrue(store.load().isEmpty());
+
+        injectTimedFrame();
+        List<FaceProfile> profiles = store.load();
+        assertEquals(1, profiles.size());
+        assertEquals("alex", profiles.get(0).getName());
+        assertEquals(0.3f, profiles.get(0).getSafeDistanceThreshold(), 0f);
+        assertArrayEquals(FaceSignature.fromLandmarks(ALEX_LANDMARKS),
+            profiles.get(0).getSignature(), 1e-5f);
+        assertNull(store.getPendingEnrollmentName());
+    }
+
+    @Test
+    public void landmarksTurnOffOnceFaceIsMatched() throws Exception {
+        saveProfile("alex", 0.3f, ALEX_LANDMARKS);
+        for (int i = 0; i < 3; i++) {
+            service.detector.thenFaces(face(0.2f, 1, ALEX_LANDMARKS));
+        }
+
+        injectTimedFrame();
+        assertTrue(service.detector.isLandmarksEnabled());
+
+        injectTimedFrame();
+        assertFalse(service.detector.isLandmarksEnabled());
+
+        // The same face keeps its match without asking for landmarks again
+        injectTimedFrame();
+        assertFalse(service.detector.isLandmarksEnabled());
+        assertEquals(0, service.detector.getRemainingSteps());
+    }
+
+    @Test
+    public void changedTrackingIdIsIdentifiedAgain() throws Exception {
+        saveProfile("alex", 0.3f, ALEX_LANDMARKS);
+        service.detector
+            .thenFaces(face(0.2f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.2f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.2f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.2f, 2, SAM_LANDMARKS));
+
+        injectTimedFrame();
+        injectTimedFrame();
+        // First frame after the rebuild adopts the restarted tracking ID
+        injectTimedFrame();
+        assertFalse(service.detector.isLandmarksEnabled());
+
+        injectTimedFrame();
+        assertTrue(service.detector.isLandmarksEnabled());
+    }
+
+    @Test
+    public void faceWithoutTrackingIdIsIdentifiedAgainOnlyAfterRealAbsence() throws Exception {
+        saveProfile("alex", 0.3f, ALEX_LANDMARKS);
+        int noId = DetectedFace.NO_TRACKING_ID;
+        service.detector
+            .thenFaces(face(0.2f, noId, ALEX_LANDMARKS))
+            .thenFaces(face(0.2f, noId, ALEX_LANDMARKS))
+            .thenFaces(face(0.2f, noId, ALEX_LANDMARKS))
+            .thenNoFace()
+            .thenFaces(face(0.2f, noId, ALEX_LANDMARKS))
+            .thenNoFace()
+            .thenFaces(face(0.2f, noId, ALEX_LANDMARKS));
+
+        injectTimedFrame();
+        injectTimedFrame();
+        injectTimedFrame();
+        assertFalse(service.detector.isLandmarksEnabled());
+
+        // A single missed frame is detector noise
+        injectTimedFrame();
+        injectTimedFrame();
+        assertFalse(service.detector.isLandmarksEnabled());
+
+        // Without tracking IDs only a real absence can mean someone else sat down
+        injectTimedFrame();
+        injectTimedFrame(TimeUnit.MILLISECONDS.toNanos(600));
+        assertTrue(service.detector.isLandmarksEnabled());
+    }
+
+    @Test
+    public void matchedProfileThresholdDecidesBlur() throws Exception {
+        saveProfile("alex", 0.3f, ALEX_LANDMARKS);
+        service.detector
+            .thenFaces(face(0.5f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.5f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.5f, 1, ALEX_LANDMARKS))
+            .thenFaces(face(0.5f, 2, SAM_LANDMARKS))
+            .thenFaces(face(0.5f, 2, SAM_LANDMARKS));
+
+        // Not identified yet, the policy threshold applies
+        injectTimedFrame();
+        assertEquals(0, overlayCount());
+
+        // Matched to alex, whose stricter threshold blurs at this distance
+        injectTimedFrame();
+        assertEquals(1, overlayCount());
+        injectTimedFrame();
+        assertEquals(1, overlayCount());
+
+        // Someone else takes over; alex's threshold no longer applies
+        injectTimedFrame();
+        assertEquals(0, overlayCount());
+
+        // No profile matches sam, so the policy threshold stays
+        injectTimedFrame();
+        assertEquals(0, overlayCount());
+        assertFalse(service.detector.isLandmarksEnabled());
+    }
+
+    @Test
+    public void policyChangeQueuedAtShutdownRunsBeforeClose() throws Exception {
+        // Hold the analyzer thread so the policy change is still queued at shutdown
+        CountDownLatch analyzerBusy = new CountDownLatch(1);
+        ExecutorService analyzerThread = service.getAnalyzerExecutor();
+        analyzerThread.execute(() -> {
+            try {
+                analyzerBusy.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writePolicyBundle("version=1\nperformance_mode=accurate\n");
+        service.getPolicyWatcher().reload();
+
+        controller.destroy();
+        controller = null;
+        analyzerBusy.countDown();
+
+        assertTrue(analyzerThread.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, service.detector.getAppliedPolicies().size());
+        assertTrue(service.detector.isClosed());
+    }
+
+    @Test
+    public void shutdownReleasesFramesInFlight() throws Exception {
+        service.detector.thenFaces(face(0.8f));
+        analyzeFrame();
+        ExecutorService analyzerThread = service.getAnalyzerExecutor();
+
+        controller.destroy();
+        controller = null;
+        assertTrue(analyzerThread.awaitTermination(5, TimeUnit.SECONDS));
+        deliverResults();
+
+        assertEquals(1, service.detector.getCancelledFrames());
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+        assertEquals(0, overlayCount());
+    }
+
+    @Test
+    public void breakOverlayTakesPriorityOverDistanceWarning() throws Exception {
+        enableBreaks(1, 20);
+        String takeBreak = service.getString(R.string.overlay_take_break);
+        String moveBack = service.getString(R.string.overlay_move_back);
+
+        // The first frame anchors the break clock
+        showFaceAfter(1, 0.2f);
+        for (int i = 0; i < 58; i++) {
+            showFaceAfter(1, 0.2f);
+        }
+        showFaceAfter(1, 0.8f);
+        assertEquals(1, overlayCount());
+        assertEquals(moveBack, overlayMessage());
+
+        // A minute of screen time starts the break on the same overlay
+        showFaceAfter(1, 0.8f);
+        assertEquals(1, overlayCount());
+        assertEquals(takeBreak, overlayMessage());
+
+        for (int i = 0; i < 19; i++) {
+            showFaceAfter(1, 0.2f);
+            assertEquals(takeBreak, overlayMessage());
+        }
+
+        // Still too close once the break is over
+        showFaceAfter(1, 0.8f);
+        assertEquals(1, overlayCount());
+        assertEquals(moveBack, overlayMessage());
+    }
+
+    @Test
+    public void breakOverlayIsRemovedWhenBreakEnds() throws Exception {
+        enableBreaks(1, 20);
+
+        showFaceAfter(1, 0.2f);
+        for (int i = 0; i < 59; i++) {
+            showFaceAfter(1, 0.2f);
+        }
+        assertEquals(0, overlayCount());
+
+        showFaceAfter(1, 0.2f);
+        assertEquals(1, overlayCount());
+        assertEquals(service.getString(R.string.overlay_take_break), overlayMessage());
+
+        showFaceAfter(19, 0.2f);
+        assertEquals(1, overlayCount());
+
+        showFaceAfter(1, 0.2f);
+        assertEquals(0, overlayCount());
+        assertFalse(service.isBlurActive());
+        assertEquals(0, service.getFramePool().getOutstandingLeases());
+    }
+}
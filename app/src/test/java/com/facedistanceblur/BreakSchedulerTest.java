@@ -0,0 +1,175 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class BreakSchedulerTest {
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private BreakScheduler scheduler;
+    private long now;
+
+    @Before
+    public void setUp() {
+        scheduler = new BreakScheduler();
+        // One minute of screen time, then a 20 second break
+        scheduler.setRules(BreakScheduler.Rules.of(1, 20));
+        // Monotonic clocks can start anywhere, including near overflow
+        now = Long.MAX_VALUE - TimeUnit.MINUTES.toNanos(10);
+    }
+
+    /** Feeds frames every 100 ms for {@code millis}; returns true if any reported a break. */
+    private boolean feed(boolean facePresent, long millis) {
+        boolean sawBreak = false;
+        long end = now + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (end - now > 0) {
+            now += FRAME_NANOS;
+            sawBreak |= scheduler.onSample(facePresent, now);
+        }
+        return sawBreak;
+    }
+
+    private static long seconds(long nanos) {
+        return TimeUnit.NANOSECONDS.toSeconds(nanos);
+    }
+
+    @Test
+    public void accumulatesFacePresentTime() {
+        assertFalse(feed(true, 30_000));
+        // First sample only anchors the clock
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(29_900), scheduler.getScreenTimeNanos());
+
+        assertFalse(feed(false, 5_000));
+        assertEquals(29, seconds(scheduler.getScreenTimeNanos()));
+    }
+
+    @Test
+    public void breakStartsAfterWorkInterval() {
+        assertFalse(feed(true, 59_000));
+        assertTrue(feed(true, 2_000));
+        assertTrue(scheduler.isOnBreak());
+    }
+
+    @Test
+    public void disabledRulesNeverBreak() {
+        scheduler.setRules(BreakScheduler.Rules.DISABLED);
+
+        assertFalse(feed(true, 120_000));
+        assertEquals(0, scheduler.getScreenTimeNanos());
+        assertFalse(BreakScheduler.Rules.of(0, 20).isEnabled());
+        assertFalse(BreakScheduler.Rules.of(20, 0).isEnabled());
+    }
+
+    @Test
+    public void gapsLongerThanCutoffAreNotCounted() {
+        feed(true, 10_000);
+        long before = scheduler.getScreenTimeNanos();
+
+        // Detection stalled for 3 s with a face on both sides
+        now += TimeUnit.SECONDS.toNanos(3);
+        scheduler.onSample(true, now);
+        assertEquals(before, scheduler.getScreenTimeNanos());
+
+        // A 1.5 s hiccup is within the cutoff and counts
+        now += TimeUnit.MILLISECONDS.toNanos(1_500);
+        scheduler.onSample(true, now);
+        assertEquals(before + TimeUnit.MILLISECONDS.toNanos(1_500), scheduler.getScreenTimeNanos());
+    }
+
+    @Test
+    public void pauseOfFullBreakLengthResets() {
+        feed(true, 40_000);
+
+        now += TimeUnit.SECONDS.toNanos(25);
+        scheduler.onSample(true, now);
+
+        assertEquals(0, scheduler.getScreenTimeNanos());
+    }
+
+    @Test
+    public void absenceOfFullBreakLengthResets() {
+        feed(true, 40_000);
+        feed(false, 19_000);
+        assertEquals(39, seconds(scheduler.getScreenTimeNanos()));
+
+        feed(false, 1_500);
+        assertEquals(0, scheduler.getScreenTimeNanos());
+
+        // Counting starts over once the face returns
+        assertFalse(feed(true, 40_000));
+    }
+
+    @Test
+    public void shortAbsenceKeepsAccumulatedTime() {
+        feed(true, 40_000);
+        feed(false, 10_000);
+        feed(true, 10_000);
+
+        assertEquals(49, seconds(scheduler.getScreenTimeNanos()));
+    }
+
+    @Test
+    public void breakEndsAfterBreakLengthAndCounterRestarts() {
+        // The first frame only anchors the clock, so 60 s of frames is 59.9 s of screen time
+        assertFalse(feed(true, 60_000));
+        now += FRAME_NANOS;
+        assertTrue(scheduler.onSample(true, now));
+        long breakStart = now;
+
+        // Break holds for its full length whether or not the user looks away
+        feed(true, 10_000);
+        assertTrue(scheduler.isOnBreak());
+        feed(false, 9_800);
+        assertTrue(scheduler.isOnBreak());
+
+        now = breakStart + TimeUnit.SECONDS.toNanos(20);
+        assertFalse(scheduler.onSample(true, now));
+        assertFalse(scheduler.isOnBreak());
+        assertEquals(0, scheduler.getScreenTimeNanos());
+
+        feed(true, 30_000);
+        assertEquals(30, seconds(scheduler.getScreenTimeNanos()));
+        assertTrue(feed(true, 31_000));
+    }
+
+    @Test
+    public void setRulesDuringBreakEndsItAndRestartsCounting() {
+        feed(true, 61_000);
+        assertTrue(scheduler.isOnBreak());
+
+        scheduler.setRules(BreakScheduler.Rules.of(2, 10));
+
+        assertFalse(scheduler.isOnBreak());
+        assertEquals(0, scheduler.getScreenTimeNanos());
+        assertFalse(feed(true, 90_000));
+        assertTrue(feed(true, 31_000));
+    }
+
+    @Test
+    public void settingEqualRulesKeepsScreenTime() {
+        feed(true, 45_000);
+        long screenTime = scheduler.getScreenTimeNanos();
+
+        scheduler.setRules(BreakScheduler.Rules.of(1, 20));
+
+        assertEquals(screenTime, scheduler.getScreenTimeNanos());
+        assertTrue(feed(true, 16_000));
+    }
+
+    @Test
+    public void disablingDuringBreakStopsIt() {
+        feed(true, 61_000);
+        assertTrue(scheduler.isOnBreak());
+
+        scheduler.setRules(BreakScheduler.Rules.DISABLED);
+
+        assertFalse(scheduler.isOnBreak());
+        assertFalse(feed(true, 5_000));
+    }
+}
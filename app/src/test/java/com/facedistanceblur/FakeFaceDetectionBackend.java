@@ -0,0 +1,192 @@
+package com.facedistanceblur;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Scripted stand-in for ML Kit. Each submitted frame consumes the next scripted result,
+ * which is posted to the main looper the way ML Kit delivers its task listeners, so
+ * tests idle the looper to see it applied. Scripted landmarks are only reported while
+ * landmark detection is enabled. Changing detector options or closing the detector
+ * cancels frames still in flight, as closing an ML Kit client does, and they are
+ * reported as failures the way {@link MlKitFaceBackend} reports cancelled tasks.
+ * Any use after close throws.
+ */
+public class FakeFaceDetectionBackend implements FaceDetectionBackend {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Object> script = new ArrayDeque<>();
+    private final Set<Delivery> inFlight = Collections.synchronizedSet(new LinkedHashSet<Delivery>());
+    // Policy and landmark changes arrive on the service's analyzer thread
+    private final List<PolicyBundle> appliedPolicies = new CopyOnWriteArrayList<>();
+    private volatile PolicyBundle policy = PolicyBundle.DEFAULT;
+    private volatile boolean landmarksEnabled;
+    private volatile boolean closed;
+    private int framesSeen;
+    private byte[] lastFrame;
+    private int cancelledFrames;
+
+    /** Queues a frame result with the given faces. */
+    public FakeFaceDetectionBackend thenFaces(DetectedFace... faces) {
+        script.add(Collections.unmodifiableList(Arrays.asList(faces)));
+        return this;
+    }
+
+    public FakeFaceDetectionBackend thenNoFace() {
+        script.add(Collections.<DetectedFace>emptyList());
+        return this;
+    }
+
+    public FakeFaceDetectionBackend thenFailure(Exception e) {
+        script.add(e);
+        return this;
+    }
+
+    /** Centered square face covering {@code ratio} of a {@code width} x {@code height} frame. */
+    public static DetectedFace faceCovering(float ratio, int width, int height) {
+        return faceCovering(ratio, width, height, 1, null);
+    }
+
+    /** Like {@link #faceCovering(float, int, int)} with a tracking ID and landmarks. */
+    public static DetectedFace faceCovering(float ratio, int width, int height, int trackingId,
+                                            float[] landmarks) {
+        int side = (int) Math.round(Math.sqrt(ratio * width * height));
+        int left = (width - side) / 2;
+        int top = (height - side) / 2;
+        return new DetectedFace(left, top, left + side, top + side, trackingId, landmarks);
+    }
+
+    private static List<DetectedFace> withoutLandmarks(List<DetectedFace> faces) {
+        List<DetectedFace> stripped = new ArrayList<>(faces.size());
+        for (DetectedFace face : faces) {
+            stripped.add(new DetectedFace(face.getLeft(), face.getTop(), face.getRight(),
+                face.getBottom(), face.getTrackingId()));
+        }
+        return stripped;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void detect(FrameBufferPool.Lease frame, Callback callback) {
+        checkOpen();
+        framesSeen++;
+        Object step = script.poll();
+        if (step == null) {
+            throw new IllegalStateException("No scripted result for frame " + framesSeen);
+        }
+        if (step instanceof List && !landmarksEnabled) {
+            step = withoutLandmarks((List<DetectedFace>) step);
+        }
+
+        ByteBuffer data = frame.getBuffer().duplicate();
+        lastFrame = new byte[data.remaining()];
+        data.get(lastFrame);
+
+        Delivery delivery = new Delivery(callback, step);
+        inFlight.add(delivery);
+        mainHandler.post(delivery);
+    }
+
+    @Override
+    public void applyPolicy(PolicyBundle newPolicy) {
+        checkOpen();
+        appliedPolicies.add(newPolicy);
+        boolean rebuild = newPolicy.detectorOptionsDiffer(policy);
+        policy = newPolicy;
+        if (rebuild) cancelInFlight();
+    }
+
+    @Override
+    public void setLandmarksEnabled(boolean enabled) {
+        checkOpen();
+        if (enabled == landmarksEnabled) return;
+        landmarksEnabled = enabled;
+        cancelInFlight();
+    }
+
+    private void cancelInFlight() {
+        synchronized (inFlight) {
+            for (Delivery delivery : inFlight) {
+                delivery.result = new CancellationException("Detector closed");
+            }
+            inFlight.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        cancelInFlight();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Detector used after close");
+        }
+    }
+
+    public int getFramesSeen() {
+        return framesSeen;
+    }
+
+    /** Frames whose result was replaced by a cancellation when the detector was rebuilt or closed. */
+    public int getCancelledFrames() {
+        return cancelledFrames;
+    }
+
+    public int getRemainingSteps() {
+        return script.size();
+    }
+
+    /** Bytes of the most recent frame as the detector received them. */
+    public byte[] getLastFrame() {
+        return lastFrame;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean isLandmarksEnabled() {
+        return landmarksEnabled;
+    }
+
+    public List<PolicyBundle> getAppliedPolicies() {
+        return appliedPolicies;
+    }
+
+    private final class Delivery implements Runnable {
+        private final Callback callback;
+        private volatile Object result;
+
+        Delivery(Callback callback, Object result) {
+            this.callback = callback;
+            this.result = result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            inFlight.remove(this);
+            Object step = result;
+            if (step instanceof CancellationException) {
+                cancelledFrames++;
+            }
+            if (step instanceof Exception) {
+                callback.onFailure((Exception) step);
+            } else {
+                callback.onFaces((List<DetectedFace>) step);
+            }
+        }
+    }
+}
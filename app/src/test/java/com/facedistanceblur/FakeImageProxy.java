@@ -0,0 +1,103 @@
+package com.facedistanceblur;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.media.Image;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageInfo;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.impl.TagBundle;
+import androidx.camera.core.impl.utils.ExifData;
+
+/** A camera frame over synthetic planes that records whether it was handed back. */
+public class FakeImageProxy implements ImageProxy {
+    private final int width;
+    private final int height;
+    private final PlaneProxy[] planes;
+    private boolean closed;
+
+    private final ImageInfo imageInfo = new ImageInfo() {
+        @NonNull
+        @Override
+        public TagBundle getTagBundle() {
+            return TagBundle.emptyBundle();
+        }
+
+        @Override
+        public long getTimestamp() {
+            return 0;
+        }
+
+        @Override
+        public int getRotationDegrees() {
+            return 0;
+        }
+
+        @Override
+        public void populateExifData(@NonNull ExifData.Builder exifBuilder) {
+        }
+    };
+
+    public FakeImageProxy(int width, int height, PlaneProxy[] planes) {
+        this.width = width;
+        this.height = height;
+        this.planes = planes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            throw new IllegalStateException("Image proxy closed twice");
+        }
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @NonNull
+    @Override
+    public Rect getCropRect() {
+        return new Rect(0, 0, width, height);
+    }
+
+    @Override
+    public void setCropRect(Rect rect) {
+    }
+
+    @Override
+    public int getFormat() {
+        return ImageFormat.YUV_420_888;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @NonNull
+    @Override
+    public PlaneProxy[] getPlanes() {
+        return planes;
+    }
+
+    @NonNull
+    @Override
+    public ImageInfo getImageInfo() {
+        return imageInfo;
+    }
+
+    @ExperimentalGetImage
+    @Override
+    public Image getImage() {
+        return null;
+    }
+}
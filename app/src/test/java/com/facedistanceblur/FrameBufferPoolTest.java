@@ -0,0 +1,200 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FrameBufferPoolTest {
+
+    @Test
+    public void acquireReturnsNullWhenExhausted() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        FrameBufferPool.Lease first = pool.acquire(16, 4, 2, 0, 1L);
+        FrameBufferPool.Lease second = pool.acquire(16, 4, 2, 0, 2L);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(pool.acquire(16, 4, 2, 0, 3L));
+        assertEquals(2, pool.getOutstandingLeases());
+
+        first.release();
+        assertNotNull(pool.acquire(16, 4, 2, 0, 4L));
+    }
+
+    @Test
+    public void lastReleaseReturnsLeaseToPool() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+
+        FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 90, 7L);
+        lease.retain();
+        assertEquals(2, lease.getRefCount());
+
+        lease.release();
+        assertEquals(1, pool.getOutstandingLeases());
+        assertNull(pool.acquire(16, 4, 2, 0, 8L));
+
+        lease.release();
+        assertEquals(0, pool.getOutstandingLeases());
+        assertSame(lease, pool.acquire(16, 4, 2, 0, 9L));
+    }
+
+    @Test
+    public void acquireCarriesFrameMetadataAndSizesBuffer() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+
+        FrameBufferPool.Lease lease = pool.acquire(24, 4, 4, 270, 42L);
+
+        assertEquals(4, lease.getWidth());
+        assertEquals(4, lease.getHeight());
+        assertEquals(270, lease.getRotationDegrees());
+        assertEquals(42L, lease.getTimestampNanos());
+        assertTrue(lease.getBuffer().isDirect());
+        assertEquals(24, lease.getBuffer().limit());
+        assertEquals(0, lease.getBuffer().position());
+    }
+
+    @Test
+    public void buffersAreReusedForSameSizeFrames() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+
+        FrameBufferPool.Lease lease = pool.acquire(64, 8, 8, 0, 1L);
+        Object buffer = lease.getBuffer();
+        lease.release();
+
+        assertSame(buffer, pool.acquire(32, 8, 4, 0, 2L).getBuffer());
+    }
+
+    @Test
+    public void overReleaseThrows() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+        FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 0, 1L);
+        lease.release();
+
+        try {
+            lease.release();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // Pool must not see the lease twice
+        }
+        assertEquals(0, pool.getOutstandingLeases());
+    }
+
+    @Test
+    public void retainAfterReleaseThrows() {
+        FrameBufferPool pool = new FrameBufferPool(1);
+        FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 0, 1L);
+        lease.release();
+
+        try {
+            lease.retain();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // Released leases cannot be revived
+        }
+    }
+
+    @Test
+    public void leakedLeaseIsVisible() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 0, 1L);
+        lease.retain();
+        lease.release();
+
+        // One reference was never dropped
+        assertEquals(1, pool.getOutstandingLeases());
+    }
+
+    @Test
+    public void concurrentRetainAndReleaseBalanceOut() throws Exception {
+        final int threads = 8;
+        final int iterations = 20_000;
+        final FrameBufferPool pool = new FrameBufferPool(2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger acquired = new AtomicInteger();
+
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 0, i);
+                        if (lease == null) continue;
+                        acquired.incrementAndGet();
+
+                        // Hand the frame to a second reader and release both references
+                        lease.retain();
+                        lease.getBuffer().get(0);
+                        lease.release();
+                        lease.release();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(acquired.get() > 0);
+        assertEquals(0, pool.getOutstandingLeases());
+        assertNotNull(pool.acquire(16, 4, 2, 0, 0L));
+        assertNotNull(pool.acquire(16, 4, 2, 0, 0L));
+        assertNull(pool.acquire(16, 4, 2, 0, 0L));
+    }
+
+    @Test
+    public void concurrentReleaseFromManyReadersRecyclesOnce() throws Exception {
+        final int readers = 8;
+        final FrameBufferPool pool = new FrameBufferPool(1);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+
+        try {
+            for (int round = 0; round < 1_000; round++) {
+                final FrameBufferPool.Lease lease = pool.acquire(16, 4, 2, 0, round);
+                assertNotNull(lease);
+                for (int r = 1; r < readers; r++) {
+                    lease.retain();
+                }
+
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> results = new ArrayList<>();
+                for (int r = 0; r < readers; r++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        lease.release();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> result : results) {
+                    result.get(30, TimeUnit.SECONDS);
+                }
+
+                assertEquals(0, pool.getOutstandingLeases());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
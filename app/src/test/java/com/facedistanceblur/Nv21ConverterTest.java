@@ -0,0 +1,103 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.camera.core.ImageProxy;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class Nv21ConverterTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    private static byte[] convert(Nv21Converter converter, SyntheticYuvFrame frame,
+                                  ImageProxy.PlaneProxy[] planes) {
+        ByteBuffer out = ByteBuffer.allocateDirect(frame.getWidth() * frame.getHeight() * 3 / 2);
+        converter.convert(frame.getWidth(), frame.getHeight(), planes, out);
+        byte[] nv21 = new byte[out.remaining()];
+        out.get(nv21);
+        return nv21;
+    }
+
+    @Test
+    public void tightlyPackedPlanarFrame() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 1);
+
+        byte[] nv21 = convert(new Nv21Converter(), frame, frame.planar(WIDTH, WIDTH / 2));
+
+        assertArrayEquals(frame.toNv21(), nv21);
+    }
+
+    @Test
+    public void paddedLumaRowsAreSkipped() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 2);
+
+        byte[] nv21 = convert(new Nv21Converter(), frame, frame.interleavedVu(WIDTH + 8, WIDTH));
+
+        assertArrayEquals(frame.toNv21(), nv21);
+    }
+
+    @Test
+    public void interleavedVuWithRowPadding() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 3);
+
+        byte[] nv21 = convert(new Nv21Converter(), frame, frame.interleavedVu(WIDTH + 4, WIDTH + 6));
+
+        assertArrayEquals(frame.toNv21(), nv21);
+    }
+
+    @Test
+    public void planarChromaWithRowPadding() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 4);
+
+        byte[] nv21 = convert(new Nv21Converter(), frame, frame.planar(WIDTH + 4, WIDTH / 2 + 3));
+
+        assertArrayEquals(frame.toNv21(), nv21);
+    }
+
+    @Test
+    public void separateChromaBuffersWithPixelStrideTwo() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 5);
+
+        byte[] nv21 = convert(new Nv21Converter(), frame, frame.separateStrided(WIDTH, WIDTH + 2));
+
+        assertArrayEquals(frame.toNv21(), nv21);
+    }
+
+    @Test
+    public void probeDetectsSharedVuBufferAndRestoresIt() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 6);
+        ImageProxy.PlaneProxy[] planes = frame.interleavedVu(WIDTH, WIDTH);
+        byte before = planes[2].getBuffer().get(1);
+
+        assertTrue(Nv21Converter.probeInterleavedVu(planes[1], planes[2]));
+        assertEquals(before, planes[2].getBuffer().get(1));
+    }
+
+    @Test
+    public void probeRejectsSeparateBuffers() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(WIDTH, HEIGHT, 7);
+        ImageProxy.PlaneProxy[] planes = frame.separateStrided(WIDTH, WIDTH);
+
+        assertFalse(Nv21Converter.probeInterleavedVu(planes[1], planes[2]));
+    }
+
+    @Test
+    public void layoutChangeWithinStreamIsProbedAgain() {
+        Nv21Converter converter = new Nv21Converter();
+        SyntheticYuvFrame first = new SyntheticYuvFrame(WIDTH, HEIGHT, 8);
+        SyntheticYuvFrame second = new SyntheticYuvFrame(WIDTH, HEIGHT, 9);
+        SyntheticYuvFrame resized = new SyntheticYuvFrame(WIDTH * 2, HEIGHT * 2, 10);
+
+        assertArrayEquals(first.toNv21(), convert(converter, first, first.interleavedVu(WIDTH, WIDTH)));
+        assertArrayEquals(second.toNv21(), convert(converter, second, second.interleavedVu(WIDTH, WIDTH)));
+        assertArrayEquals(second.toNv21(), convert(converter, second, second.planar(WIDTH, WIDTH / 2)));
+        assertArrayEquals(resized.toNv21(),
+            convert(converter, resized, resized.interleavedVu(WIDTH * 2, WIDTH * 2)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class PolicyBundleTest {
+
+    private static PolicyBundle parse(String text) {
+        return PolicyBundle.parse(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void assertRejected(String text) {
+        try {
+            parse(text);
+            fail("Expected IllegalArgumentException for: " + text);
+        } catch (IllegalArgumentException expected) {
+            // Malformed bundles must never replace the active policy
+        }
+    }
+
+    @Test
+    public void parsesAllKeys() {
+        PolicyBundle bundle = parse("version=3\n"
+            + "safe_distance_threshold=0.55\n"
+            + "min_face_size=0.2\n"
+            + "performance_mode=accurate\n");
+
+        assertEquals(3, bundle.getVersion());
+        assertEquals(0.55f, bundle.getSafeDistanceThreshold(), 1e-6f);
+        assertEquals(0.2f, bundle.getMinFaceSize(), 1e-6f);
+        assertTrue(bundle.isAccurateMode());
+    }
+
+    @Test
+    public void missingKeysFallBackToDefaults() {
+        PolicyBundle bundle = parse("version=1");
+
+        assertEquals(1, bundle.getVersion());
+        assertEquals(PolicyBundle.DEFAULT.getSafeDistanceThreshold(), bundle.getSafeDistanceThreshold(), 0f);
+        assertEquals(PolicyBundle.DEFAULT.getMinFaceSize(), bundle.getMinFaceSize(), 0f);
+        assertFalse(bundle.isAccurateMode());
+    }
+
+    @Test
+    public void skipsCommentsAndBlankLines() {
+        PolicyBundle bundle = parse("# fleet rollout 12\n\n   \nversion=2\n  # indented comment\n"
+            + "safe_distance_threshold=0.5\n");
+
+        assertEquals(2, bundle.getVersion());
+        assertEquals(0.5f, bundle.getSafeDistanceThreshold(), 1e-6f);
+    }
+
+    @Test
+    public void acceptsCrlfAndSurroundingWhitespace() {
+        PolicyBundle bundle = parse("version = 4\r\n\tsafe_distance_threshold =\t0.7 \r\nperformance_mode=fast\r\n");
+
+        assertEquals(4, bundle.getVersion());
+        assertEquals(0.7f, bundle.getSafeDistanceThreshold(), 1e-6f);
+        assertFalse(bundle.isAccurateMode());
+    }
+
+    @Test
+    public void ignoresUnknownKeys() {
+        PolicyBundle bundle = parse("version=5\nbreak_minutes=20\nfuture_key=anything at all\n");
+
+        assertEquals(5, bundle.getVersion());
+    }
+
+    @Test
+    public void acceptsRatioForms() {
+        assertEquals(1f, parse("version=1\nsafe_distance_threshold=1").getSafeDistanceThreshold(), 0f);
+        assertEquals(0.25f, parse("version=1\nsafe_distance_threshold=.25").getSafeDistanceThreshold(), 1e-6f);
+        assertEquals(0.5f, parse("version=1\nsafe_distance_threshold=0.500000000000001")
+            .getSafeDistanceThreshold(), 1e-6f);
+    }
+
+    @Test
+    public void rejectsMissingVersion() {
+        assertRejected("safe_distance_threshold=0.5\n");
+        assertRejected("");
+        assertRejected("# only a comment\n");
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        assertRejected("version=1\nsafe_distance_threshold\n");
+        assertRejected("version=\n");
+        assertRejected("version=-1\n");
+        assertRejected("version=1\nperformance_mode=turbo\n");
+    }
+
+    @Test
+    public void rejectsBadRatios() {
+        assertRejected("version=1\nsafe_distance_threshold=0\n");
+        assertRejected("version=1\nsafe_distance_threshold=0.0\n");
+        assertRejected("version=1\nsafe_distance_threshold=1.01\n");
+        assertRejected("version=1\nsafe_distance_threshold=-0.5\n");
+        assertRejected("version=1\nsafe_distance_threshold=6e-1\n");
+        assertRejected("version=1\nsafe_distance_threshold=0.5.1\n");
+        assertRejected("version=1\nsafe_distance_threshold=.\n");
+        assertRejected("version=1\nmin_face_size=\n");
+    }
+
+    @Test
+    public void rejectsOverflow() {
+        assertRejected("version=2147483648\n");
+        assertRejected("version=99999999999999999999\n");
+        assertRejected("version=1\nsafe_distance_threshold=1000000000000\n");
+        assertEquals(Integer.MAX_VALUE, parse("version=2147483647").getVersion());
+    }
+
+    @Test
+    public void detectorOptionsDifferOnlyForDetectorKeys() {
+        PolicyBundle base = parse("version=1\nsafe_distance_threshold=0.5\nmin_face_size=0.15");
+
+        assertFalse(base.detectorOptionsDiffer(parse("version=2\nsafe_distance_threshold=0.4\nmin_face_size=0.15")));
+        assertTrue(base.detectorOptionsDiffer(parse("version=2\nmin_face_size=0.2")));
+        assertTrue(base.detectorOptionsDiffer(parse("version=2\nmin_face_size=0.15\nperformance_mode=accurate")));
+    }
+}
@@ -0,0 +1,130 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PolicyStoreTest {
+
+    private static PolicyBundle bundle(int version, float threshold) {
+        return new PolicyBundle(version, threshold, 0.15f, false);
+    }
+
+    @Test
+    public void newerVersionReplacesActive() {
+        PolicyStore store = new PolicyStore(PolicyBundle.DEFAULT);
+        PolicyBundle next = bundle(1, 0.5f);
+
+        assertSame(PolicyBundle.DEFAULT, store.update(next));
+        assertSame(next, store.get());
+    }
+
+    @Test
+    public void staleOrEqualVersionIsIgnored() {
+        PolicyStore store = new PolicyStore(bundle(5, 0.5f));
+        PolicyBundle active = store.get();
+
+        assertNull(store.update(bundle(5, 0.3f)));
+        assertNull(store.update(bundle(4, 0.3f)));
+        assertSame(active, store.get());
+    }
+
+    @Test
+    public void concurrentUpdatesKeepHighestVersion() throws Exception {
+        final int threads = 8;
+        final int versionsPerThread = 2_000;
+        final PolicyStore store = new PolicyStore(PolicyBundle.DEFAULT);
+        final AtomicInteger applied = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 1; i <= versionsPerThread; i++) {
+                        PolicyBundle previous = store.update(bundle(i * threads + offset, 0.5f));
+                        if (previous != null) {
+                            applied.incrementAndGet();
+                            // Every swap must move strictly forward
+                            assertTrue(previous.getVersion() < i * threads + offset);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(versionsPerThread * threads + threads - 1, store.get().getVersion());
+        assertTrue(applied.get() > 0);
+    }
+
+    @Test
+    public void readersMidFrameAlwaysSeeConsistentSnapshot() throws Exception {
+        // Each bundle pairs its version with a threshold derived from it; a torn read would
+        // show a mismatch between the two
+        final PolicyStore store = new PolicyStore(bundle(0, thresholdFor(0)));
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger mismatches = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    int lastVersion = -1;
+                    while (!done.get()) {
+                        PolicyBundle frame = store.get();
+                        if (frame.getSafeDistanceThreshold() != thresholdFor(frame.getVersion())
+                                || frame.getVersion() < lastVersion) {
+                            mismatches.incrementAndGet();
+                        }
+                        lastVersion = frame.getVersion();
+                    }
+                    return null;
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                for (int v = 1; v <= 50_000; v++) {
+                    store.update(bundle(v, thresholdFor(v)));
+                }
+                return null;
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, mismatches.get());
+        assertEquals(50_000, store.get().getVersion());
+    }
+
+    private static float thresholdFor(int version) {
+        return 0.1f + (version % 90) / 100f;
+    }
+}
@@ -0,0 +1,257 @@
+package com.facedistanceblur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures profile matching on synthetic faces. Each synthetic person is a canonical
+ * frontal landmark layout with per-person proportions; each observation adds landmark
+ * jitter and a random scale, rotation and position, as a detector would see them.
+ */
+public class ProfileMatchingBenchmarkTest {
+    // Canonical landmarks in units of the inter-eye distance, FaceSignature order
+    private static final float[] CANONICAL = {
+        -0.5f, 0f, 0.5f, 0f, 0f, 0.55f, -0.4f, 0.95f, 0.4f, 0.95f, 0f, 1.1f
+    };
+    private static final double PERSON_SPREAD = 0.06;
+    private static final double LANDMARK_JITTER = 0.01;
+    private static final int TRIALS = 4_000;
+    private static final double TARGET_FALSE_MATCH_RATE = 0.01;
+
+    private final Random random = new Random(42);
+
+    private float[] randomPerson() {
+        float[] person = CANONICAL.clone();
+        for (int i = 4; i < person.length; i++) {
+            person[i] += (float) (random.nextGaussian() * PERSON_SPREAD);
+        }
+        return person;
+    }
+
+    private float[] observe(float[] person) {
+        double scale = 60 + random.nextDouble() * 140;
+        double angle = (random.nextDouble() - 0.5) * 0.5;
+        double dx = random.nextDouble() * 400;
+        double dy = random.nextDouble() * 300;
+        float[] points = new float[person.length];
+        for (int i = 0; i < FaceSignature.LANDMARK_COUNT; i++) {
+            double x = person[i * 2] + random.nextGaussian() * LANDMARK_JITTER;
+            double y = person[i * 2 + 1] + random.nextGaussian() * LANDMARK_JITTER;
+            points[i * 2] = (float) (scale * (x * Math.cos(angle) - y * Math.sin(angle)) + dx);
+            points[i * 2 + 1] = (float) (scale * (x * Math.sin(angle) + y * Math.cos(angle)) + dy);
+        }
+        return points;
+    }
+
+    private float[] probe(float[] person) {
+        return FaceSignature.fromLandmarks(observe(person));
+    }
+
+    // Same five-frame average the service uses when enrolling
+    private float[] enroll(float[] person) {
+        float[] sum = new float[FaceSignature.LENGTH];
+        for (int n = 0; n < 5; n++) {
+            float[] signature = probe(person);
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += signature[i] / 5f;
+            }
+        }
+        return sum;
+    }
+
+    private static float distance(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            float diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    @Test
+    public void signatureIgnoresScaleRotationAndPosition() {
+        float[] person = randomPerson();
+        float[] a = FaceSignature.fromLandmarks(scaleRotate(person, 50, 0.3, 10, 20));
+        float[] b = FaceSignature.fromLandmarks(scaleRotate(person, 180, -0.2, 300, 5));
+
+        assertEquals(FaceSignature.LENGTH, a.length);
+        assertTrue(distance(a, b) < 1e-4f);
+    }
+
+    private static float[] scaleRotate(float[] person, double scale, double angle, double dx, double dy) {
+        float[] points = new float[person.length];
+        for (int i = 0; i < FaceSignature.LANDMARK_COUNT; i++) {
+            double x = person[i * 2];
+            double y = person[i * 2 + 1];
+            points[i * 2] = (float) (scale * (x * Math.cos(angle) - y * Math.sin(angle)) + dx);
+            points[i * 2 + 1] = (float) (scale * (x * Math.sin(angle) + y * Math.cos(angle)) + dy);
+        }
+        return points;
+    }
+
+    @Test
+    public void coincidentEyesGiveNoSignature() {
+        float[] points = new float[FaceSignature.LANDMARK_COUNT * 2];
+        assertNull(FaceSignature.fromLandmarks(points));
+    }
+
+    @Test
+    public void defaultThresholdSeparatesGenuineFromImpostorProbes() {
+        float[] genuine = new float[TRIALS];
+        float[] impostor = new float[TRIALS];
+        for (int t = 0; t < TRIALS; t++) {
+            float[] person = randomPerson();
+            float[] enrolled = enroll(person);
+            genuine[t] = distance(enrolled, probe(person));
+            impostor[t] = distance(enrolled, probe(randomPerson()));
+        }
+        Arrays.sort(genuine);
+        Arrays.sort(impostor);
+
+        // Largest cutoff that keeps impostors under the target false-match rate
+        float derived = impostor[(int) (TARGET_FALSE_MATCH_RATE * TRIALS)];
+        float threshold = ProfileIndex.DEFAULT_MAX_DISTANCE;
+        double falseMatchRate = fractionAtOrBelow(impostor, threshold);
+        double trueMatchRate = fractionAtOrBelow(genuine, threshold);
+
+        System.out.printf("Profile match: derived cutoff %.3f for %.1f%% FMR; at %.3f FMR=%.2f%% TMR=%.2f%%%n",
+            derived, TARGET_FALSE_MATCH_RATE * 100, threshold, falseMatchRate * 100, trueMatchRate * 100);
+
+        assertTrue("Default threshold above derived cutoff " + derived, threshold <= derived);
+        assertTrue("False-match rate " + falseMatchRate, falseMatchRate <= TARGET_FALSE_MATCH_RATE);
+        assertTrue("True-match rate " + trueMatchRate, trueMatchRate >= 0.95);
+    }
+
+    private static double fractionAtOrBelow(float[] sorted, float threshold) {
+        int count = 0;
+        while (count < sorted.length && sorted[count] <= threshold) count++;
+        return (double) count / sorted.length;
+    }
+
+    @Test
+    public void householdIdentificationAccuracy() {
+        int households = 500;
+        int probesPerHousehold = 20;
+        int correct = 0;
+        int wrongProfile = 0;
+        int unknownAccepted = 0;
+        int genuineProbes = 0;
+        int unknownProbes = 0;
+
+        for (int h = 0; h < households; h++) {
+            List<float[]> members = new ArrayList<>();
+            List<FaceProfile> profiles = new ArrayList<>();
+            for (int m = 0; m < 4; m++) {
+                float[] member = randomPerson();
+                members.add(member);
+                profiles.add(new FaceProfile("member" + m, 0.5f, enroll(member)));
+            }
+            ProfileIndex index = new ProfileIndex(profiles);
+
+            for (int p = 0; p < probesPerHousehold; p++) {
+                int who = p % members.size();
+                FaceProfile match = index.findNearest(probe(members.get(who)), ProfileIndex.DEFAULT_MAX_DISTANCE);
+                genuineProbes++;
+                if (match == profiles.get(who)) {
+                    correct++;
+                } else if (match != null) {
+                    wrongProfile++;
+                }
+
+                unknownProbes++;
+                if (index.findNearest(probe(randomPerson()), ProfileIndex.DEFAULT_MAX_DISTANCE) != null) {
+                    unknownAccepted++;
+                }
+            }
+        }
+
+        double accuracy = (double) correct / genuineProbes;
+        double wrongRate = (double) wrongProfile / genuineProbes;
+        double unknownRate = (double) unknownAccepted / unknownProbes;
+        System.out.printf("Household of 4: correct=%.2f%% wrong profile=%.2f%% visitor matched=%.2f%%%n",
+            accuracy * 100, wrongRate * 100, unknownRate * 100);
+
+        assertTrue("Identification accuracy " + accuracy, accuracy >= 0.90);
+        assertTrue("Wrong-profile rate " + wrongRate, wrongRate <= 0.02);
+        // A visitor can match any of four profiles, so allow four times the per-pair rate
+        assertTrue("Visitor match rate " + unknownRate, unknownRate <= 4 * TARGET_FALSE_MATCH_RATE);
+    }
+
+    @Test
+    public void nearestNeighbourReturnsClosestWithinCutoff() {
+        float[] a = new float[FaceSignature.LENGTH];
+        float[] b = new float[FaceSignature.LENGTH];
+        Arrays.fill(b, 0.1f);
+        FaceProfile first = new FaceProfile("a", 0.5f, a);
+        FaceProfile second = new FaceProfile("b", 0.4f, b);
+        ProfileIndex index = new ProfileIndex(Arrays.asList(first, second));
+
+        float[] nearB = b.clone();
+        nearB[0] += 0.01f;
+        assertSame(second, index.findNearest(nearB, 0.05f));
+        assertSame(first, index.findNearest(a, 0.05f));
+
+        float[] far = new float[FaceSignature.LENGTH];
+        Arrays.fill(far, 1f);
+        assertNull(index.findNearest(far, 0.05f));
+        assertNull(ProfileIndex.EMPTY.findNearest(a, 1f));
+    }
+
+    @Test
+    public void matchingCost() {
+        int[] sizes = {4, 8, 32};
+        int probes = 256;
+        int iterations = 200_000;
+
+        float[][] probeSignatures = new float[probes][];
+        for (int i = 0; i < probes; i++) {
+            probeSignatures[i] = probe(randomPerson());
+        }
+
+        for (int size : sizes) {
+            List<FaceProfile> profiles = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                profiles.add(new FaceProfile("p" + i, 0.5f, enroll(randomPerson())));
+            }
+            ProfileIndex index = new ProfileIndex(profiles);
+
+            // Warm up so the JIT has compiled the scan before timing it
+            int sink = 0;
+            for (int i = 0; i < iterations; i++) {
+                if (index.findNearest(probeSignatures[i % probes], 1f) != null) sink++;
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                if (index.findNearest(probeSignatures[i % probes], 1f) != null) sink++;
+            }
+            long nanosPerMatch = (System.nanoTime() - start) / iterations;
+            System.out.println("findNearest over " + size + " profiles: " + nanosPerMatch + " ns/op");
+            assertTrue(sink > 0);
+            // Loose bound that only catches gross regressions such as per-call allocation
+            assertTrue(nanosPerMatch < 100_000);
+        }
+
+        float[] landmarks = observe(randomPerson());
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += FaceSignature.fromLandmarks(landmarks).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += FaceSignature.fromLandmarks(landmarks).length;
+        }
+        System.out.println("FaceSignature.fromLandmarks: " + (System.nanoTime() - start) / iterations + " ns/op");
+        assertNotNull(landmarks);
+        assertTrue(sink > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.facedistanceblur;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A small YUV_420_888 frame with distinct sample values, laid out in memory the ways
+ * devices deliver it. Row padding is filled with a marker byte so a converter that
+ * copies padding produces a visibly wrong NV21 frame.
+ */
+public class SyntheticYuvFrame {
+    private static final byte PADDING = (byte) 0xEE;
+
+    private final int width;
+    private final int height;
+    private final byte[] y;
+    private final byte[] u;
+    private final byte[] v;
+
+    public SyntheticYuvFrame(int width, int height, int seed) {
+        this.width = width;
+        this.height = height;
+        y = new byte[width * height];
+        u = new byte[width / 2 * height / 2];
+        v = new byte[u.length];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = (byte) (seed + i);
+        }
+        for (int i = 0; i < u.length; i++) {
+            u[i] = (byte) (seed + 64 + i);
+            v[i] = (byte) (seed + 128 + i);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Reference NV21: all luma rows, then chroma rows of V,U pairs. */
+    public byte[] toNv21() {
+        byte[] nv21 = new byte[y.length + u.length * 2];
+        System.arraycopy(y, 0, nv21, 0, y.length);
+        for (int i = 0; i < u.length; i++) {
+            nv21[y.length + i * 2] = v[i];
+            nv21[y.length + i * 2 + 1] = u[i];
+        }
+        return nv21;
+    }
+
+    /** Separate U and V planes with one byte per sample, as some devices deliver I420. */
+    public ImageProxy.PlaneProxy[] planar(int yRowStride, int chromaRowStride) {
+        return new ImageProxy.PlaneProxy[] {
+            lumaPlane(yRowStride),
+            chromaPlane(u, chromaRowStride, 1),
+            chromaPlane(v, chromaRowStride, 1)
+        };
+    }
+
+    /** Separate U and V buffers that each skip every other byte, sharing no memory. */
+    public ImageProxy.PlaneProxy[] separateStrided(int yRowStride, int chromaRowStride) {
+        return new ImageProxy.PlaneProxy[] {
+            lumaPlane(yRowStride),
+            chromaPlane(u, chromaRowStride, 2),
+            chromaPlane(v, chromaRowStride, 2)
+        };
+    }
+
+    /**
+     * U and V as views over one interleaved VU buffer, the common layout. V starts at the
+     * first byte and stops one short of the end, U starts at the second byte.
+     */
+    public ImageProxy.PlaneProxy[] interleavedVu(int yRowStride, int chromaRowStride) {
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        ByteBuffer vu = paddedBuffer(chromaRowStride * (chromaHeight - 1) + chromaWidth * 2);
+        for (int row = 0; row < chromaHeight; row++) {
+            for (int col = 0; col < chromaWidth; col++) {
+                vu.put(row * chromaRowStride + col * 2, v[row * chromaWidth + col]);
+                vu.put(row * chromaRowStride + col * 2 + 1, u[row * chromaWidth + col]);
+            }
+        }
+
+        vu.position(0);
+        vu.limit(vu.capacity() - 1);
+        ByteBuffer vView = vu.slice();
+        vu.limit(vu.capacity());
+        vu.position(1);
+        ByteBuffer uView = vu.slice();
+        return new ImageProxy.PlaneProxy[] {
+            lumaPlane(yRowStride),
+            new FakePlaneProxy(uView, chromaRowStride, 2),
+            new FakePlaneProxy(vView, chromaRowStride, 2)
+        };
+    }
+
+    private ImageProxy.PlaneProxy lumaPlane(int rowStride) {
+        ByteBuffer buffer = paddedBuffer(rowStride * (height - 1) + width);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                buffer.put(row * rowStride + col, y[row * width + col]);
+            }
+        }
+        return new FakePlaneProxy(buffer, rowStride, 1);
+    }
+
+    private ImageProxy.PlaneProxy chromaPlane(byte[] samples, int rowStride, int pixelStride) {
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        ByteBuffer buffer = paddedBuffer(rowStride * (chromaHeight - 1)
+            + (chromaWidth - 1) * pixelStride + 1);
+        for (int row = 0; row < chromaHeight; row++) {
+            for (int col = 0; col < chromaWidth; col++) {
+                buffer.put(row * rowStride + col * pixelStride, samples[row * chromaWidth + col]);
+            }
+        }
+        return new FakePlaneProxy(buffer, rowStride, pixelStride);
+    }
+
+    private static ByteBuffer paddedBuffer(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, PADDING);
+        }
+        return buffer;
+    }
+
+    public static class FakePlaneProxy implements ImageProxy.PlaneProxy {
+        private final ByteBuffer buffer;
+        private final int rowStride;
+        private final int pixelStride;
+
+        FakePlaneProxy(ByteBuffer buffer, int rowStride, int pixelStride) {
+            this.buffer = buffer;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+        }
+
+        @Override
+        public int getRowStride() {
+            return rowStride;
+        }
+
+        @Override
+        public int getPixelStride() {
+            return pixelStride;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+    }
+}